@@ -0,0 +1,141 @@
+package com.github.guilhe.circularprogressview;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.os.Build;
+import android.provider.Settings;
+import android.view.Choreographer;
+
+/**
+ * Process-wide frame loop shared by every animation in this library.
+ * <p>
+ * A single {@link Choreographer.FrameCallback} is registered while at least one client is active and every client is
+ * stepped in one pass per frame, so per-frame scheduling cost doesn't grow with the number of animated views.
+ * Clients leave by returning false from {@link Client#onTick(long)} or through {@link #remove(Client)}.
+ * Must be used from the main thread.
+ */
+final class AnimationTicker implements Choreographer.FrameCallback {
+
+    interface Client {
+        /**
+         * @param frameTimeNanos vsync time of the current frame
+         * @return true to keep receiving frames
+         */
+        boolean onTick(long frameTimeNanos);
+    }
+
+    private static AnimationTicker sInstance;
+
+    private Client[] mClients = new Client[16];
+    private int mCount;
+    private boolean mScheduled;
+    private boolean mTicking;
+
+    private AnimationTicker() {
+    }
+
+    static AnimationTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new AnimationTicker();
+        }
+        return sInstance;
+    }
+
+    void add(Client client) {
+        if (indexOf(client) >= 0) {
+            return;
+        }
+        if (mCount == mClients.length) {
+            Client[] clients = new Client[mCount * 2];
+            System.arraycopy(mClients, 0, clients, 0, mCount);
+            mClients = clients;
+        }
+        mClients[mCount++] = client;
+        if (!mScheduled) {
+            mScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    void remove(Client client) {
+        int index = indexOf(client);
+        if (index < 0) {
+            return;
+        }
+        mClients[index] = null;
+        if (!mTicking) {
+            compact();
+        }
+    }
+
+    /**
+     * Frames are stepped in real time, durations have to be scaled by the caller the way {@link ValueAnimator} does.
+     *
+     * @return the system animator duration scale, 0 when animations are turned off
+     */
+    static float getDurationScale(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return ValueAnimator.getDurationScale();
+        }
+        return Settings.Global.getFloat(context.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+    }
+
+    boolean contains(Client client) {
+        return indexOf(client) >= 0;
+    }
+
+    int getClientCount() {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mClients[i] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+        mTicking = true;
+        //clients added while ticking are appended and stepped in this same pass
+        for (int i = 0; i < mCount; i++) {
+            Client client = mClients[i];
+            if (client != null && !client.onTick(frameTimeNanos)) {
+                mClients[i] = null;
+            }
+        }
+        mTicking = false;
+        compact();
+        if (mCount > 0) {
+            mScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private int indexOf(Client client) {
+        for (int i = 0; i < mCount; i++) {
+            if (mClients[i] == client) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void compact() {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mClients[i] != null) {
+                mClients[count++] = mClients[i];
+            }
+        }
+        for (int i = count; i < mCount; i++) {
+            mClients[i] = null;
+        }
+        mCount = count;
+        if (mCount == 0 && mScheduled && !mTicking) {
+            mScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+}
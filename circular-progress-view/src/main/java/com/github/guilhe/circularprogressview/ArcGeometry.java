@@ -0,0 +1,214 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * Android-free arc math used by {@link CircularProgressView}.
+ * <p>
+ * Holds the inputs that shape the arc (progress, max, startingAngle, thickness and size) and lazily recomputes
+ * the sweep angle, radius and thumb position only when one of them actually changes.
+ * Trigonometry is resolved through a precomputed float table with linear interpolation,
+ * the absolute error of {@link #sin(float)} and {@link #cos(float)} is below {@link #TRIG_MAX_ERROR}.
+ */
+final class ArcGeometry {
+
+    private static final int TABLE_SIZE = 4096;
+    private static final double STEPS_PER_DEGREE = TABLE_SIZE / 360d;
+    private static final float[] SIN_TABLE = new float[TABLE_SIZE + 1];
+
+    /**
+     * Interpolation error is bounded by h^2/8 (h = 2*PI / {@link #TABLE_SIZE}, ~2.9e-7) plus float rounding.
+     */
+    static final float TRIG_MAX_ERROR = 1e-6f;
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            SIN_TABLE[i] = (float) Math.sin(i * 2 * Math.PI / TABLE_SIZE);
+        }
+    }
+
+    private final float mViewPadding;
+    private final float mShadowOffset;
+
+    private float mProgress;
+    private float mMax;
+    private float mStartingAngle;
+    private float mThickness;
+    private float mSize;
+    private boolean mDirty = true;
+
+    private float mSweepAngle;
+    private float mRadius;
+    private float mThumbX;
+    private float mThumbY;
+
+    /**
+     * @param viewPadding  padding between the view bounds and the arc, in pixels
+     * @param shadowOffset vertical distance between the arc and its shadow, in pixels
+     */
+    ArcGeometry(float viewPadding, float shadowOffset) {
+        mViewPadding = viewPadding;
+        mShadowOffset = shadowOffset;
+    }
+
+    /**
+     * @param degrees any angle, negative or above 360 included
+     * @return sin(degrees) with an absolute error below {@link #TRIG_MAX_ERROR}
+     */
+    static float sin(float degrees) {
+        return lookup(degrees);
+    }
+
+    /**
+     * @param degrees any angle, negative or above 360 included
+     * @return cos(degrees) with an absolute error below {@link #TRIG_MAX_ERROR}
+     */
+    static float cos(float degrees) {
+        return lookup(degrees + 90d);
+    }
+
+    private static float lookup(double degrees) {
+        //index is kept in double so large angles don't lose precision before the table lookup
+        double index = degrees * STEPS_PER_DEGREE;
+        int floor = (int) Math.floor(index);
+        float fraction = (float) (index - floor);
+        int i = floor & (TABLE_SIZE - 1);
+        return SIN_TABLE[i] + (SIN_TABLE[i + 1] - SIN_TABLE[i]) * fraction;
+    }
+
+    /**
+     * Computes the bounds of the ring segment between two sweep angles, including its stroke.
+     *
+     * @param centerX       arc center x
+     * @param centerY       arc center y
+     * @param radius        arc radius, measured on the stroke center line
+     * @param startingAngle angle where the arc starts, in degrees
+     * @param fromSweep     one end of the segment, relative to startingAngle
+     * @param toSweep       the other end of the segment, relative to startingAngle
+     * @param outset        extra space around the center line (half stroke, thumb radius, anti-aliasing)
+     * @param out           receives left, top, right and bottom
+     */
+    static void getSweepBounds(float centerX, float centerY, float radius, float startingAngle, float fromSweep, float toSweep, float outset, float[] out) {
+        float start = startingAngle + Math.min(fromSweep, toSweep);
+        float end = startingAngle + Math.max(fromSweep, toSweep);
+        float left, top, right, bottom;
+        if (end - start >= 360) {
+            left = top = -radius;
+            right = bottom = radius;
+        } else {
+            left = right = cos(start) * radius;
+            top = bottom = sin(start) * radius;
+            //the segment reaches its end and every circle extreme (multiple of 90 degrees) it crosses
+            for (float angle = Math.min((float) Math.ceil(start / 90) * 90, end); ; angle = Math.min(angle + 90, end)) {
+                float x = cos(angle) * radius;
+                float y = sin(angle) * radius;
+                left = Math.min(left, x);
+                right = Math.max(right, x);
+                top = Math.min(top, y);
+                bottom = Math.max(bottom, y);
+                if (angle >= end) {
+                    break;
+                }
+            }
+        }
+        out[0] = centerX + left - outset;
+        out[1] = centerY + top - outset;
+        out[2] = centerX + right + outset;
+        out[3] = centerY + bottom + outset;
+    }
+
+    void setProgress(float progress) {
+        if (mProgress != progress) {
+            mProgress = progress;
+            mDirty = true;
+        }
+    }
+
+    void setMax(float max) {
+        if (mMax != max) {
+            mMax = max;
+            mDirty = true;
+        }
+    }
+
+    void setStartingAngle(float startingAngle) {
+        if (mStartingAngle != startingAngle) {
+            mStartingAngle = startingAngle;
+            mDirty = true;
+        }
+    }
+
+    void setThickness(float thickness) {
+        if (mThickness != thickness) {
+            mThickness = thickness;
+            mDirty = true;
+        }
+    }
+
+    void setSize(float size) {
+        if (mSize != size) {
+            mSize = size;
+            mDirty = true;
+        }
+    }
+
+    /**
+     * @return true if any input changed since the last computation
+     */
+    boolean isDirty() {
+        return mDirty;
+    }
+
+    float getStartingAngle() {
+        return mStartingAngle;
+    }
+
+    float getShadowOffset() {
+        return mShadowOffset;
+    }
+
+    float getThumbRadius() {
+        return mThickness / 2;
+    }
+
+    float getSweepAngle() {
+        update();
+        return mSweepAngle;
+    }
+
+    float getRadius() {
+        update();
+        return mRadius;
+    }
+
+    /**
+     * @return thumb x position relative to the arc center
+     */
+    float getThumbX() {
+        update();
+        return mThumbX;
+    }
+
+    /**
+     * @return thumb y position relative to the arc center
+     */
+    float getThumbY() {
+        update();
+        return mThumbY;
+    }
+
+    private void update() {
+        if (!mDirty) {
+            return;
+        }
+        mDirty = false;
+
+        //Who doesn't love a bit of math? :)
+        //cos(a) = adj / hyp <>cos(angle) = x / radius <>x = cos(angle) * radius
+        //sin(a) = opp / hyp <>sin(angle) = y / radius <>y = sin(angle) * radius
+        //x = cos(startingAngle + progressAngle) * radius + originX(center)
+        //y = sin(startingAngle + progressAngle) * radius + originY(center)
+        mSweepAngle = 360 * mProgress / mMax;
+        mRadius = mSize / 2 - mViewPadding - getThumbRadius() - mThickness / 2;
+        mThumbX = cos(mStartingAngle + mSweepAngle) * mRadius;
+        mThumbY = sin(mStartingAngle + mSweepAngle) * mRadius;
+    }
+}
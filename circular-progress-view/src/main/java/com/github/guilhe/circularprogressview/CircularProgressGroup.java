@@ -0,0 +1,463 @@
+package com.github.guilhe.circularprogressview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import java.util.Arrays;
+
+import static com.github.guilhe.circularprogressview.CircularProgressView.*;
+
+/**
+ * A single {@link View} that lays out and draws many rings in a grid, meant for walls of progress indicators.
+ * <p>
+ * Rings are kept in parallel primitive arrays and drawn in one {@link #onDraw(Canvas)} with three shared paints,
+ * each ring looks like a default {@link CircularProgressView} of the cell size.
+ * All ring animations run from the frame loop shared with every other view of this library and only the cells that
+ * changed are invalidated. Hardware accelerated canvases record every ring again on each draw regardless, unless
+ * {@link #setCellCacheEnabled(boolean)} keeps each cell in a bitmap that's only redrawn once the cell changed.
+ * Must be used from the main thread.
+ */
+@SuppressWarnings("unused")
+public class CircularProgressGroup extends View {
+
+    private static final int DEFAULT_COLUMN_COUNT = 4;
+
+    private final StyleConfig.Dimensions mDimensions = StyleConfig.getDimensions(getContext());
+    private final float mDefaultViewPadding = mDimensions.viewPadding;
+    private final float mDefaultShadowPadding = mDimensions.shadowPadding;
+    private final float mDefaultStrokeThickness = mDimensions.strokeThickness;
+
+    private int mCount;
+    private int mColumnCount = DEFAULT_COLUMN_COUNT;
+    private boolean mShadowEnabled = true;
+    private boolean mProgressThumbEnabled;
+
+    private float[] mProgress = new float[0];
+    private int[] mMax = new int[0];
+    private int[] mProgressColor = new int[0];
+    private int[] mBackgroundColor = new int[0];
+    private int[] mStartingAngle = new int[0];
+    private float[] mThickness = new float[0];
+
+    private float[] mAnimationFrom = new float[0];
+    private float[] mAnimationTo = new float[0];
+    private long[] mAnimationStartNanos = new long[0];
+    private long[] mAnimationDurationNanos = new long[0];
+    private boolean[] mAnimating = new boolean[0];
+    private int mAnimatingCount;
+
+    private final ArcGeometry mGeometry = new ArcGeometry(mDefaultViewPadding, mDefaultShadowPadding);
+    private final Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mProgressRectF = new RectF();
+    private final RectF mShadowRectF = new RectF();
+    private final Rect mClipRect = new Rect();
+
+    private boolean mCellCacheEnabled;
+    private Bitmap[] mCellBitmaps = new Bitmap[0];
+    private boolean[] mCellDirty = new boolean[0];
+    private final Canvas mCellCanvas = new Canvas();
+    private int mCellRenderCount;
+
+    private final AnimationTicker.Client mTickerClient = new AnimationTicker.Client() {
+        @Override
+        public boolean onTick(long frameTimeNanos) {
+            stepAnimations(frameTimeNanos);
+            return mAnimatingCount > 0;
+        }
+    };
+
+    public CircularProgressGroup(Context context) {
+        super(context);
+        init();
+    }
+
+    public CircularProgressGroup(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public CircularProgressGroup(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        mBackgroundPaint.setStyle(Paint.Style.STROKE);
+        mProgressPaint.setStyle(Paint.Style.STROKE);
+        mShadowPaint.setStyle(Paint.Style.STROKE);
+        mShadowPaint.setColor(DEFAULT_SHADOW_COLOR);
+    }
+
+    /**
+     * Resizes the model, existing rings keep their values and new ones get {@link CircularProgressView}'s defaults.
+     *
+     * @param count number of rings
+     */
+    public void setRingCount(int count) {
+        if (count == mCount) {
+            return;
+        }
+        int previous = mCount;
+        mProgress = Arrays.copyOf(mProgress, count);
+        mMax = Arrays.copyOf(mMax, count);
+        mProgressColor = Arrays.copyOf(mProgressColor, count);
+        mBackgroundColor = Arrays.copyOf(mBackgroundColor, count);
+        mStartingAngle = Arrays.copyOf(mStartingAngle, count);
+        mThickness = Arrays.copyOf(mThickness, count);
+        mAnimationFrom = Arrays.copyOf(mAnimationFrom, count);
+        mAnimationTo = Arrays.copyOf(mAnimationTo, count);
+        mAnimationStartNanos = Arrays.copyOf(mAnimationStartNanos, count);
+        mAnimationDurationNanos = Arrays.copyOf(mAnimationDurationNanos, count);
+        mAnimating = Arrays.copyOf(mAnimating, count);
+        mCellBitmaps = Arrays.copyOf(mCellBitmaps, count);
+        mCellDirty = Arrays.copyOf(mCellDirty, count);
+        for (int i = previous; i < count; i++) {
+            mMax[i] = DEFAULT_MAX;
+            mProgressColor[i] = DEFAULT_PROGRESS_COLOR;
+            mBackgroundColor[i] = DEFAULT_PROGRESS_COLOR;
+            mStartingAngle[i] = DEFAULT_STARTING_ANGLE;
+            mThickness[i] = mDefaultStrokeThickness;
+        }
+        mCount = count;
+        mAnimatingCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (mAnimating[i]) {
+                mAnimatingCount++;
+            }
+        }
+        requestLayout();
+        invalidateAll();
+    }
+
+    public int getRingCount() {
+        return mCount;
+    }
+
+    public void setColumnCount(int columns) {
+        mColumnCount = Math.max(1, columns);
+        requestLayout();
+        invalidateAll();
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public void setShadowEnabled(boolean enable) {
+        mShadowEnabled = enable;
+        invalidateAll();
+    }
+
+    public boolean isShadowEnabled() {
+        return mShadowEnabled;
+    }
+
+    public void setProgressThumbEnabled(boolean enable) {
+        mProgressThumbEnabled = enable;
+        invalidateAll();
+    }
+
+    public boolean isProgressThumbEnabled() {
+        return mProgressThumbEnabled;
+    }
+
+    /**
+     * Keeps every cell in its own {@link Bitmap.Config#ARGB_8888} bitmap, redrawn only once the cell changed, so a draw
+     * pass blits unchanged rings instead of recording their arcs again. Costs 4 bytes per pixel of every cell.
+     *
+     * @param enable false by default
+     */
+    public void setCellCacheEnabled(boolean enable) {
+        mCellCacheEnabled = enable;
+        if (!enable) {
+            releaseCellBitmaps();
+        }
+        invalidateAll();
+    }
+
+    public boolean isCellCacheEnabled() {
+        return mCellCacheEnabled;
+    }
+
+    /**
+     * @return cells drawn into their bitmap so far, with {@link #setCellCacheEnabled(boolean)}
+     */
+    public int getCellRenderCount() {
+        return mCellRenderCount;
+    }
+
+    public void setMax(int index, int max) {
+        mMax[index] = max;
+        invalidateRing(index);
+    }
+
+    public int getMax(int index) {
+        return mMax[index];
+    }
+
+    /**
+     * Changes progress and background color of one ring
+     */
+    public void setColor(int index, int color) {
+        mProgressColor[index] = color;
+        mBackgroundColor[index] = color;
+        invalidateRing(index);
+    }
+
+    public void setProgressColor(int index, int color) {
+        mProgressColor[index] = color;
+        invalidateRing(index);
+    }
+
+    public int getProgressColor(int index) {
+        return mProgressColor[index];
+    }
+
+    public void setBackgroundColor(int index, int color) {
+        mBackgroundColor[index] = color;
+        invalidateRing(index);
+    }
+
+    public int getBackgroundColor(int index) {
+        return mBackgroundColor[index];
+    }
+
+    public void setStartingAngle(int index, int angle) {
+        mStartingAngle[index] = angle;
+        invalidateRing(index);
+    }
+
+    public int getStartingAngle(int index) {
+        return mStartingAngle[index];
+    }
+
+    /**
+     * @param thickness in pixels
+     */
+    public void setProgressStrokeThickness(int index, float thickness) {
+        mThickness[index] = thickness;
+        invalidateRing(index);
+    }
+
+    public float getProgressStrokeThickness(int index) {
+        return mThickness[index];
+    }
+
+    public void setProgress(int index, float progress) {
+        setProgress(index, progress, false);
+    }
+
+    public void setProgress(int index, float progress, boolean animate) {
+        setProgress(index, progress, animate, DEFAULT_ANIMATION_MILLIS);
+    }
+
+    public void setProgress(int index, float progress, boolean animate, long duration) {
+        //with animations turned off the new value is shown right away
+        float scale = animate ? AnimationTicker.getDurationScale(getContext()) : 0;
+        if (scale > 0) {
+            if (!mAnimating[index]) {
+                mAnimating[index] = true;
+                mAnimatingCount++;
+            }
+            mAnimationFrom[index] = mProgress[index];
+            mAnimationTo[index] = progress;
+            mAnimationStartNanos[index] = -1;
+            mAnimationDurationNanos[index] = (long) (duration * 1000000L * scale);
+            scheduleFrame();
+        } else {
+            if (mAnimating[index]) {
+                mAnimating[index] = false;
+                mAnimatingCount--;
+            }
+            mProgress[index] = progress;
+            invalidateRing(index);
+        }
+    }
+
+    public float getProgress(int index) {
+        return mProgress[index];
+    }
+
+    private void stepAnimations(long frameTimeNanos) {
+        for (int i = 0; i < mCount && mAnimatingCount > 0; i++) {
+            if (!mAnimating[i]) {
+                continue;
+            }
+            if (mAnimationStartNanos[i] < 0) {
+                mAnimationStartNanos[i] = frameTimeNanos;
+            }
+            long elapsed = frameTimeNanos - mAnimationStartNanos[i];
+            float fraction = mAnimationDurationNanos[i] > 0 ? Math.min(1f, (float) elapsed / mAnimationDurationNanos[i]) : 1f;
+            float from = mAnimationFrom[i];
+            mProgress[i] = from + (mAnimationTo[i] - from) * DEFAULT_INTERPOLATOR.getInterpolation(fraction);
+            if (fraction >= 1) {
+                mAnimating[i] = false;
+                mAnimatingCount--;
+            }
+            invalidateRing(i);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mAnimatingCount > 0 && isAttachedToWindow() && isShown()) {
+            AnimationTicker.getInstance().add(mTickerClient);
+        }
+    }
+
+    private void cancelFrame() {
+        AnimationTicker.getInstance().remove(mTickerClient);
+    }
+
+    private int getCellSize() {
+        return getWidth() / mColumnCount;
+    }
+
+    /**
+     * Only the cell is invalidated and marked dirty, unchanged cells are skipped by {@link #onDraw(Canvas)}'s clip check
+     * on software canvases, and blitted from their bitmap when cached.
+     */
+    private void invalidateRing(int index) {
+        mCellDirty[index] = true;
+        int cellSize = getCellSize();
+        int left = (index % mColumnCount) * cellSize;
+        int top = (index / mColumnCount) * cellSize;
+        invalidate(left, top, left + cellSize, top + cellSize);
+    }
+
+    private void invalidateAll() {
+        Arrays.fill(mCellDirty, true);
+        invalidate();
+    }
+
+    private void releaseCellBitmaps() {
+        Arrays.fill(mCellBitmaps, null);
+        Arrays.fill(mCellDirty, true);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleFrame();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelFrame();
+        releaseCellBitmaps();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (isShown()) {
+            scheduleFrame();
+        } else {
+            cancelFrame();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int rows = (mCount + mColumnCount - 1) / mColumnCount;
+        int height = resolveSize(rows * (width / mColumnCount), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        int cellSize = getCellSize();
+        if (cellSize <= 0) {
+            return;
+        }
+        canvas.getClipBounds(mClipRect);
+        for (int i = 0; i < mCount; i++) {
+            int left = (i % mColumnCount) * cellSize;
+            int top = (i / mColumnCount) * cellSize;
+            if (!mClipRect.intersects(left, top, left + cellSize, top + cellSize)) {
+                continue;
+            }
+            if (mCellCacheEnabled) {
+                canvas.drawBitmap(getCellBitmap(i, cellSize), left, top, null);
+            } else {
+                drawRing(canvas, i, left, top, cellSize);
+            }
+        }
+    }
+
+    /**
+     * @return the cell's bitmap, redrawn first if the cell changed since
+     */
+    private Bitmap getCellBitmap(int index, int cellSize) {
+        Bitmap bitmap = mCellBitmaps[index];
+        if (bitmap == null || bitmap.getWidth() != cellSize) {
+            bitmap = Bitmap.createBitmap(cellSize, cellSize, Bitmap.Config.ARGB_8888);
+            mCellBitmaps[index] = bitmap;
+        } else if (!mCellDirty[index]) {
+            return bitmap;
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        mCellCanvas.setBitmap(bitmap);
+        drawRing(mCellCanvas, index, 0, 0, cellSize);
+        mCellCanvas.setBitmap(null);
+        mCellDirty[index] = false;
+        mCellRenderCount++;
+        return bitmap;
+    }
+
+    /**
+     * Mirrors {@link CircularProgressView}'s onDraw for a ring of the given cell size.
+     */
+    private void drawRing(Canvas canvas, int index, int left, int top, int cellSize) {
+        float thickness = mThickness[index];
+        float arcDim = thickness + mDefaultViewPadding;
+        if (cellSize - 2 * arcDim <= thickness) {
+            return;
+        }
+        mProgressRectF.set(left + arcDim, top + arcDim, left + cellSize - arcDim, top + cellSize - arcDim);
+        mShadowRectF.set(mProgressRectF.left, mProgressRectF.top + mDefaultShadowPadding, mProgressRectF.right, mProgressRectF.bottom + mDefaultShadowPadding);
+
+        mGeometry.setProgress(mProgress[index]);
+        mGeometry.setMax(mMax[index]);
+        mGeometry.setStartingAngle(mStartingAngle[index]);
+        mGeometry.setThickness(thickness);
+        mGeometry.setSize(cellSize);
+
+        mBackgroundPaint.setStrokeWidth(thickness);
+        mProgressPaint.setStrokeWidth(thickness);
+        mShadowPaint.setStrokeWidth(thickness);
+        mBackgroundPaint.setColor(adjustAlpha(mBackgroundColor[index], DEFAULT_BACKGROUND_ALPHA));
+        mProgressPaint.setColor(mProgressColor[index]);
+
+        int startingAngle = mStartingAngle[index];
+        float angle = mGeometry.getSweepAngle();
+        float endX = mGeometry.getThumbX();
+        float endY = mGeometry.getThumbY();
+        float thumbRadius = mGeometry.getThumbRadius();
+        if (mShadowEnabled) {
+            if (mProgressThumbEnabled) {
+                canvas.drawCircle(endX + mShadowRectF.centerX(), endY + mShadowRectF.centerY(), thumbRadius, mShadowPaint);
+            }
+            canvas.drawArc(mShadowRectF, startingAngle, angle, false, mShadowPaint);
+        }
+        canvas.drawOval(mProgressRectF, mBackgroundPaint);
+        canvas.drawArc(mProgressRectF, startingAngle, angle, false, mProgressPaint);
+
+        if (mProgressThumbEnabled) {
+            canvas.drawCircle(endX + mProgressRectF.centerX(), endY + mProgressRectF.centerY(), thumbRadius, mProgressPaint);
+        }
+    }
+}
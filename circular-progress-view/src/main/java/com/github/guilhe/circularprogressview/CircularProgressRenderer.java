@@ -0,0 +1,315 @@
+package com.github.guilhe.circularprogressview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+
+import static com.github.guilhe.circularprogressview.CircularProgressView.*;
+
+/**
+ * Draws the same ring as {@link CircularProgressView} without a View, for notification icons, widgets or exports.
+ * <p>
+ * Rings are drawn into caller supplied bitmaps or canvases, or into bitmaps taken from a bounded pool, reused by size,
+ * that are given back through {@link #release(Bitmap)}. Drawing again into the same bitmap when only progress grew,
+ * with neither shadow nor thumb and an opaque progress color, only draws the newly swept wedge.
+ * Every method is synchronized, a renderer can be shared across threads.
+ */
+@SuppressWarnings("unused")
+public final class CircularProgressRenderer {
+
+    public static final int MAX_POOL_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private final float mViewPadding;
+    private final float mShadowPadding;
+
+    private int mMax = DEFAULT_MAX;
+    private int mStartingAngle = DEFAULT_STARTING_ANGLE;
+    private float mThickness;
+    private int mProgressColor = DEFAULT_PROGRESS_COLOR;
+    private int mBackgroundColor = DEFAULT_PROGRESS_COLOR;
+    private boolean mShadowEnabled = true;
+    private boolean mThumbEnabled;
+    private RingRenderer mRingRenderer = DEFAULT_RING_RENDERER;
+    private int mConfigVersion;
+
+    private final ArcGeometry mGeometry;
+    private final RectF mProgressRectF = new RectF();
+    private final RectF mShadowRectF = new RectF();
+    private final Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Canvas mCanvas = new Canvas();
+    private final Path mClipPath = new Path();
+    private final RectF mClipRectF = new RectF();
+    private final DrawCommandBuffer mCommandBuffer = new DrawCommandBuffer();
+    private final Paint[] mPaints = {mBackgroundPaint, mProgressPaint, mShadowPaint};
+
+    private final ArrayList<Bitmap> mPool = new ArrayList<>();
+    private int mPoolBytes;
+
+    private Bitmap mLastBitmap;
+    private float mLastProgress;
+    private int mLastConfigVersion = -1;
+    private int mIncrementalRenderCount;
+    private int mFullRenderCount;
+
+    /**
+     * @param context only used to resolve the dp based defaults, not retained
+     */
+    public CircularProgressRenderer(Context context) {
+        StyleConfig.Dimensions dimensions = StyleConfig.getDimensions(context);
+        mViewPadding = dimensions.viewPadding;
+        mShadowPadding = dimensions.shadowPadding;
+        mThickness = dimensions.strokeThickness;
+        mGeometry = new ArcGeometry(mViewPadding, mShadowPadding);
+        mBackgroundPaint.setStyle(Paint.Style.STROKE);
+        mProgressPaint.setStyle(Paint.Style.STROKE);
+        mShadowPaint.setStyle(Paint.Style.STROKE);
+        mShadowPaint.setColor(DEFAULT_SHADOW_COLOR);
+    }
+
+    /**
+     * Copies the appearance of a view (max, starting angle, colors, thickness, shadow, thumb and ring renderer).
+     * Must be called from the main thread.
+     */
+    public synchronized void setAppearance(CircularProgressView view) {
+        mMax = view.getMax();
+        mStartingAngle = view.getStartingAngle();
+        mProgressColor = view.getProgressColor();
+        mBackgroundColor = view.getBackgroundColor();
+        mThickness = view.getProgressStrokeThickness();
+        mShadowEnabled = view.isShadowEnabled();
+        mThumbEnabled = view.isProgressThumbEnabled();
+        mRingRenderer = view.getRingRenderer();
+        mConfigVersion++;
+    }
+
+    public synchronized void setMax(int max) {
+        mMax = max;
+        mConfigVersion++;
+    }
+
+    public synchronized int getMax() {
+        return mMax;
+    }
+
+    public synchronized void setStartingAngle(int angle) {
+        mStartingAngle = angle;
+        mConfigVersion++;
+    }
+
+    public synchronized int getStartingAngle() {
+        return mStartingAngle;
+    }
+
+    public synchronized void setProgressColor(int color) {
+        mProgressColor = color;
+        mConfigVersion++;
+    }
+
+    public synchronized int getProgressColor() {
+        return mProgressColor;
+    }
+
+    public synchronized void setBackgroundColor(int color) {
+        mBackgroundColor = color;
+        mConfigVersion++;
+    }
+
+    public synchronized int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    /**
+     * @param thickness in pixels
+     */
+    public synchronized void setProgressStrokeThickness(float thickness) {
+        mThickness = thickness;
+        mConfigVersion++;
+    }
+
+    public synchronized float getProgressStrokeThickness() {
+        return mThickness;
+    }
+
+    public synchronized void setShadowEnabled(boolean enable) {
+        mShadowEnabled = enable;
+        mConfigVersion++;
+    }
+
+    public synchronized boolean isShadowEnabled() {
+        return mShadowEnabled;
+    }
+
+    public synchronized void setProgressThumbEnabled(boolean enable) {
+        mThumbEnabled = enable;
+        mConfigVersion++;
+    }
+
+    public synchronized boolean isProgressThumbEnabled() {
+        return mThumbEnabled;
+    }
+
+    /**
+     * @param renderer null for the default {@link StandardRingRenderer}
+     */
+    public synchronized void setRingRenderer(@Nullable RingRenderer renderer) {
+        mRingRenderer = renderer != null ? renderer : DEFAULT_RING_RENDERER;
+        mConfigVersion++;
+    }
+
+    public synchronized RingRenderer getRingRenderer() {
+        return mRingRenderer;
+    }
+
+    /**
+     * Draws the ring into a pooled, or new, {@link Bitmap.Config#ARGB_8888} bitmap.
+     *
+     * @param size width and height in pixels
+     * @return a bitmap owned by the caller until it's given back through {@link #release(Bitmap)}
+     */
+    public synchronized Bitmap render(int size, float progress) {
+        Bitmap bitmap = obtain(size);
+        render(bitmap, progress);
+        return bitmap;
+    }
+
+    /**
+     * Draws the ring, sized min(width, height), into a mutable bitmap. When the previous call drew into this same
+     * bitmap with the same appearance and progress only grew, only the new wedge is drawn, provided neither shadow nor
+     * thumb are enabled and the progress color is opaque. Along the wedge's starting edge anti-aliasing may then differ
+     * slightly from a full render.
+     * The bitmap must not be modified by anyone else between incremental renders.
+     */
+    public synchronized void render(Bitmap bitmap, float progress) {
+        int size = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        mCanvas.setBitmap(bitmap);
+        if (bitmap == mLastBitmap && mConfigVersion == mLastConfigVersion && progress >= mLastProgress && !mShadowEnabled
+                && !mThumbEnabled && Color.alpha(mProgressColor) == 255) {
+            drawIncrement(mCanvas, size, mLastProgress, progress);
+            mIncrementalRenderCount++;
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            draw(mCanvas, size, progress);
+            mFullRenderCount++;
+        }
+        mCanvas.setBitmap(null);
+        mLastBitmap = bitmap;
+        mLastProgress = progress;
+        mLastConfigVersion = mConfigVersion;
+    }
+
+    /**
+     * Draws the ring at the canvas origin, on top of whatever it already holds.
+     *
+     * @param size width and height in pixels
+     */
+    public synchronized void render(Canvas canvas, int size, float progress) {
+        draw(canvas, size, progress);
+    }
+
+    /**
+     * Gives a bitmap back to the pool, which keeps up to {@link #MAX_POOL_SIZE_BYTES}. The caller must not use it anymore.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == mLastBitmap) {
+            mLastBitmap = null;
+        }
+        int bytes = bitmap.getByteCount();
+        if (mPool.contains(bitmap) || bytes > MAX_POOL_SIZE_BYTES) {
+            return;
+        }
+        while (mPoolBytes + bytes > MAX_POOL_SIZE_BYTES) {
+            mPoolBytes -= mPool.remove(0).getByteCount();
+        }
+        mPool.add(bitmap);
+        mPoolBytes += bytes;
+    }
+
+    public synchronized void clearPool() {
+        mPool.clear();
+        mPoolBytes = 0;
+    }
+
+    /**
+     * @return bytes currently held by the pool
+     */
+    public synchronized int getPoolSize() {
+        return mPoolBytes;
+    }
+
+    public synchronized int getIncrementalRenderCount() {
+        return mIncrementalRenderCount;
+    }
+
+    public synchronized int getFullRenderCount() {
+        return mFullRenderCount;
+    }
+
+    private Bitmap obtain(int size) {
+        for (int i = mPool.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mPool.get(i);
+            if (bitmap.getWidth() == size && bitmap.getHeight() == size) {
+                mPool.remove(i);
+                mPoolBytes -= bitmap.getByteCount();
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Same geometry, paints and {@link RingRenderer} commands as {@link CircularProgressView#onDraw(Canvas)}.
+     */
+    private void draw(Canvas canvas, int size, float progress) {
+        prepare(size, progress);
+        mCommandBuffer.reset();
+        mRingRenderer.record(mProgressRectF.centerX(), mProgressRectF.centerY(), mProgressRectF.width() / 2, mThickness,
+                mShadowPadding, mStartingAngle, mGeometry.getSweepAngle(), mShadowEnabled, mThumbEnabled, mCommandBuffer);
+        mCommandBuffer.replay(canvas, mPaints);
+    }
+
+    private void drawIncrement(Canvas canvas, int size, float from, float to) {
+        prepare(size, from);
+        float fromAngle = mGeometry.getSweepAngle();
+        prepare(size, to);
+        float toAngle = mGeometry.getSweepAngle();
+        if (toAngle <= fromAngle) {
+            return;
+        }
+        //the whole arc, clipped to the wedge that wasn't drawn yet, keeps its outer edges identical to a full render
+        float cx = mProgressRectF.centerX();
+        float cy = mProgressRectF.centerY();
+        float reach = mProgressRectF.width() / 2 + mThickness;
+        mClipRectF.set(cx - reach, cy - reach, cx + reach, cy + reach);
+        mClipPath.rewind();
+        mClipPath.moveTo(cx, cy);
+        mClipPath.arcTo(mClipRectF, mStartingAngle + fromAngle, toAngle - fromAngle);
+        mClipPath.close();
+        int count = canvas.save();
+        canvas.clipPath(mClipPath);
+        canvas.drawArc(mProgressRectF, mStartingAngle, toAngle, false, mProgressPaint);
+        canvas.restoreToCount(count);
+    }
+
+    private void prepare(int size, float progress) {
+        layoutRects(size, mThickness, mViewPadding, mShadowPadding, mProgressRectF, mShadowRectF);
+        mBackgroundPaint.setColor(adjustAlpha(mBackgroundColor, DEFAULT_BACKGROUND_ALPHA));
+        mProgressPaint.setColor(mProgressColor);
+        mBackgroundPaint.setStrokeWidth(mThickness);
+        mProgressPaint.setStrokeWidth(mThickness);
+        mShadowPaint.setStrokeWidth(mThickness);
+        mGeometry.setProgress(progress);
+        mGeometry.setMax(mMax);
+        mGeometry.setStartingAngle(mStartingAngle);
+        mGeometry.setThickness(mThickness);
+        mGeometry.setSize(size);
+    }
+}
@@ -1,19 +1,24 @@
 package com.github.guilhe.circularprogressview;
 
-import android.animation.Animator;
-import android.animation.FloatEvaluator;
 import android.animation.TimeInterpolator;
-import android.animation.ValueAnimator;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.*;
 import android.os.Build;
+import android.os.Looper;
 import android.support.annotation.ColorRes;
+import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
 
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Created by gdelgado on 30/08/2017.
  */
@@ -22,43 +27,116 @@ public class CircularProgressView extends View {
 
     private static final String TAG = CircularProgressView.class.getSimpleName();
 
-    private static final float DEFAULT_VIEW_PADDING_DP = 10;
-    private static final float DEFAULT_SHADOW_PADDING_DP = 5;
-    private static final float DEFAULT_STROKE_THICKNESS_DP = 10;
-    private static final int DEFAULT_MAX_WIDTH_DP = 100;
-    private static final int DEFAULT_MAX = 100;
-    private static final int DEFAULT_STARTING_ANGLE = 270;
-    private static final int DEFAULT_ANIMATION_MILLIS = 1000;
-    private static final int DEFAULT_PROGRESS_COLOR = Color.BLACK;
-    private static final float DEFAULT_BACKGROUND_ALPHA = 0.3f;
-    private static final TimeInterpolator DEFAULT_INTERPOLATOR = new DecelerateInterpolator();
-
-    private final float mDefaultViewPadding = convertDpToPx(getContext(), DEFAULT_VIEW_PADDING_DP);
-    private final float mDefaultShadowPadding = convertDpToPx(getContext(), DEFAULT_SHADOW_PADDING_DP);
-    private final float mDefaultStrokeThickness = convertDpToPx(getContext(), DEFAULT_STROKE_THICKNESS_DP);
-    private final int mDefaultMaxWidth = convertDpToPx(getContext(), DEFAULT_MAX_WIDTH_DP);
-
-    private int mMax;
-    private boolean mShadowEnabled;
-    private boolean mProgressThumbEnabled;
-    private int mStartingAngle;
-    private float mProgress;
-    private float mProgressStrokeThickness;
-    private float mProgressIconThickness;
-    private int mProgressColor;
-    private int mBackgroundColor;
-
+    static final float DEFAULT_VIEW_PADDING_DP = 10;
+    static final float DEFAULT_SHADOW_PADDING_DP = 5;
+    static final float DEFAULT_SHADOW_BLUR_DP = 4;
+    static final float DEFAULT_STROKE_THICKNESS_DP = 10;
+    static final int DEFAULT_MAX_WIDTH_DP = 100;
+    private static final float DEFAULT_REDRAW_THRESHOLD_PX = 0.5f;
+    private static final float DEFAULT_SPRING_STIFFNESS = 200;
+    static final int DEFAULT_MAX = 100;
+    static final int DEFAULT_STARTING_ANGLE = 270;
+    static final int DEFAULT_ANIMATION_MILLIS = 1000;
+    static final int DEFAULT_PROGRESS_COLOR = Color.BLACK;
+    static final float DEFAULT_BACKGROUND_ALPHA = 0.3f;
+    static final int DEFAULT_SHADOW_COLOR = adjustAlpha(Color.BLACK, 0.2f);
+    static final TimeInterpolator DEFAULT_INTERPOLATOR = new DecelerateInterpolator();
+    static final RingRenderer DEFAULT_RING_RENDERER = new StandardRingRenderer();
+
+    private final StyleConfig.Dimensions mDimensions = StyleConfig.getDimensions(getContext());
+    private final float mDefaultViewPadding = mDimensions.viewPadding;
+    private final float mDefaultShadowPadding = mDimensions.shadowPadding;
+    private final float mDefaultStrokeThickness = mDimensions.strokeThickness;
+    private final int mDefaultMaxWidth = mDimensions.maxWidth;
+
+    private RenderState mState;
+    private RenderState.Snapshot mDrawState;
+    private Runnable mThicknessChangedRunnable;
+    private Runnable mInvalidateRunnable;
+    private final AtomicBoolean mInvalidatePending = new AtomicBoolean();
+
+    private ArcGeometry mGeometry;
     private RectF mProgressRectF;
     private RectF mShadowRectF;
     private Paint mBackgroundPaint;
     private Paint mProgressPaint;
     private Paint mShadowPaint;
+    private LayerCache mLayerCache;
+    private LayerCache.Key mLayerKey;
+    private LayerCache mSoftShadowCache;
+    private LayerCache.Key mSoftShadowKey;
+    private float mShadowBlurRadius = mDimensions.shadowBlur;
+    private Path mShadowClipPath;
+    private RectF mShadowClipRectF;
+    private float[] mDirtyBounds;
+    private final AtomicLong mInvalidatedArea = new AtomicLong();
+    private float mRedrawThreshold;
+    private boolean mSuppressCallbacksBelowThreshold;
+    private float mLastIssuedProgress;
+    private boolean mHasSuppressedProgress;
+    private float mFlushCandidate;
+    private AnimationTicker.Client mFlushClient;
+    private long mIssuedFrameCount;
+    private long mSuppressedFrameCount;
     private int mLastValidRawMeasuredDim;
     private float mLastValidStrokeThickness;
+    private int mCachedWidthMeasureSpec = -1;
+    private int mCachedHeightMeasureSpec = -1;
+    private float mCachedMeasureThickness = -1;
+    private int mCachedMeasuredDim;
+    private int mMeasurePassCount;
+    private int mLayoutRequestCount;
 
     private TimeInterpolator mInterpolator;
-    private Animator mProgressAnimator;
+    private ProgressAnimator mProgressAnimator;
+    private boolean mSpringAnimationEnabled;
+    private float mSpringStiffness = DEFAULT_SPRING_STIFFNESS;
     private OnProgressChangeAnimationCallback mCallback;
+    private final ArrayList<ThrottledProgressListener> mListeners = new ArrayList<>();
+
+    private ProgressSource mProgressSource;
+    private AnimationTicker.Client mSourceClient;
+    private long mLastSampledCurrent;
+    private long mLastSampledTotal;
+
+    private boolean mAttached;
+    private boolean mSnapAnimationsWhenHidden;
+    private boolean mIndeterminate;
+    private IndeterminateSpinner mSpinner;
+    private AnimationTicker.Client mIndeterminateClient;
+
+    private ProgressGradient mGradient;
+    private SegmentSet mSegments;
+    private Paint mSegmentPaint;
+    private AnimationTicker.Client mSegmentClient;
+    private boolean mSegmentsPaused;
+
+    private boolean mAutoHardwareLayer;
+    private boolean mTranslucent;
+    private long mPromotedLayerBytes;
+    private boolean mLayerPolicyPending;
+    private Runnable mLayerPolicyRunnable;
+    private ViewTreeObserver.OnPreDrawListener mAncestorListener;
+    private Runnable mAncestorRestCheck;
+    private boolean mAncestorListenerAdded;
+    private boolean mAncestorAnimating;
+    private int mAncestorRestFrames;
+    private float[] mAncestorState = new float[0];
+
+    private RenderMetrics mMetrics;
+
+    private int mQuantizedSteps;
+    private RingAtlasCache mAtlasCache;
+    private RingAtlasCache.Key mAtlasKey;
+    private Rect mAtlasSrc;
+    private Rect mAtlasDst;
+
+    private RingRenderer mRingRenderer = DEFAULT_RING_RENDERER;
+    private DrawCommandBuffer mCommandBuffer;
+    private Paint[] mRendererPaints;
+    private RingRenderer mRecordedRenderer;
+    private float[] mRecordedGeometry;
+    private int mRecordedFlags;
 
     public interface OnProgressChangeAnimationCallback {
         void onProgressChanged(float progress);
@@ -67,31 +145,156 @@ public class CircularProgressView extends View {
     }
 
     public CircularProgressView(Context context) {
-        super(context);
-        init(context, null);
+        this(context, null);
     }
 
     public CircularProgressView(Context context, AttributeSet attrs) {
-        super(context, attrs);
-        init(context, attrs);
+        this(context, attrs, R.attr.circularProgressViewStyle);
     }
 
     public CircularProgressView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init(context, attrs);
+        init(context, attrs, defStyleAttr, R.style.CircularProgressView);
     }
 
     @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     public CircularProgressView(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
-        init(context, attrs);
+        init(context, attrs, defStyleAttr, defStyleRes);
     }
 
-    private void init(Context context, AttributeSet attrs) {
+    private void init(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        mState = new RenderState();
+        mDrawState = new RenderState.Snapshot();
+        mThicknessChangedRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onThicknessChanged();
+            }
+        };
+        mInvalidateRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mInvalidatePending.set(false);
+                invalidateState();
+            }
+        };
         mLastValidStrokeThickness = mDefaultStrokeThickness;
         mInterpolator = DEFAULT_INTERPOLATOR;
+        mGeometry = new ArcGeometry(mDefaultViewPadding, mDefaultShadowPadding);
         mProgressRectF = new RectF();
         mShadowRectF = new RectF();
+        mDirtyBounds = new float[4];
+        mRedrawThreshold = DEFAULT_REDRAW_THRESHOLD_PX;
+        mFlushClient = new AnimationTicker.Client() {
+            @Override
+            public boolean onTick(long frameTimeNanos) {
+                if (!mHasSuppressedProgress) {
+                    return false;
+                }
+                //flush once the value rested for a whole frame, otherwise the feed is still moving. The first tick,
+                //which may be the same frame it was armed on, only takes the candidate
+                float progress = mState.getProgress();
+                if (progress == mFlushCandidate) {
+                    flushProgress();
+                    return false;
+                }
+                mFlushCandidate = progress;
+                return true;
+            }
+        };
+        mProgressAnimator = new ProgressAnimator(new ProgressAnimator.Listener() {
+            @Override
+            public void onAnimationUpdate(float value) {
+                if (mMetrics != null) {
+                    mMetrics.recordAnimationFrame();
+                }
+                boolean issued = setProgressValue(value);
+                if (issued || !mSuppressCallbacksBelowThreshold) {
+                    dispatchProgressEvent(false);
+                }
+            }
+
+            @Override
+            public void onAnimationEnd() {
+                flushProgress();
+                scheduleLayerPolicy();
+                dispatchProgressEvent(true);
+            }
+        });
+        mLayerPolicyRunnable = new Runnable() {
+            @Override
+            public void run() {
+                applyLayerPolicy();
+            }
+        };
+        mAncestorListener = new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                //an ancestor's alpha or transform changed since the last drawn frame
+                if (updateAncestorState()) {
+                    mAncestorRestFrames = 0;
+                    if (!mAncestorAnimating) {
+                        mAncestorAnimating = true;
+                        scheduleLayerPolicy();
+                        postOnAnimation(mAncestorRestCheck);
+                    }
+                }
+                return true;
+            }
+        };
+        mAncestorRestCheck = new Runnable() {
+            @Override
+            public void run() {
+                //nothing is drawn once ancestors rest, so their end is polled on the following frames
+                if (updateAncestorState()) {
+                    mAncestorRestFrames = 0;
+                } else if (++mAncestorRestFrames >= 2) {
+                    mAncestorAnimating = false;
+                    scheduleLayerPolicy();
+                    return;
+                }
+                postOnAnimation(this);
+            }
+        };
+        mSourceClient = new AnimationTicker.Client() {
+            @Override
+            public boolean onTick(long frameTimeNanos) {
+                sampleProgressSource();
+                return mProgressSource != null;
+            }
+        };
+        mSpinner = new IndeterminateSpinner();
+        mIndeterminateClient = new AnimationTicker.Client() {
+            @Override
+            public boolean onTick(long frameTimeNanos) {
+                mSpinner.step(frameTimeNanos);
+                if (mMetrics != null) {
+                    mMetrics.recordAnimationFrame();
+                }
+                invalidateState();
+                return mIndeterminate;
+            }
+        };
+        mSegmentClient = new AnimationTicker.Client() {
+            @Override
+            public boolean onTick(long frameTimeNanos) {
+                if (mSegments == null) {
+                    return false;
+                }
+                if (mMetrics != null) {
+                    mMetrics.recordAnimationFrame();
+                }
+                if (mSegments.step(frameTimeNanos, mInterpolator)) {
+                    invalidateState();
+                }
+                if (!mSegments.isAnimating()) {
+                    scheduleLayerPolicy();
+                    return false;
+                }
+                return true;
+            }
+        };
 
         mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mBackgroundPaint.setStyle(Paint.Style.STROKE);
@@ -99,34 +302,22 @@ public class CircularProgressView extends View {
         mProgressPaint.setStyle(Paint.Style.STROKE);
         mShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mShadowPaint.setStyle(Paint.Style.STROKE);
-
-        if (attrs != null) {
-            TypedArray typedArray = context.getTheme().obtainStyledAttributes(attrs, R.styleable.CircularProgressView, 0, 0);
-            try {
-                mMax = typedArray.getInt(R.styleable.CircularProgressView_max, DEFAULT_MAX);
-                mShadowEnabled = typedArray.getBoolean(R.styleable.CircularProgressView_shadow, true);
-                mProgressThumbEnabled = typedArray.getBoolean(R.styleable.CircularProgressView_progressThumb, false);
-                mStartingAngle = typedArray.getInteger(R.styleable.CircularProgressView_startingAngle, DEFAULT_STARTING_ANGLE);
-                mProgress = typedArray.getFloat(R.styleable.CircularProgressView_progress, 0);
-                mProgressStrokeThickness = typedArray.getDimension(R.styleable.CircularProgressView_progressBarThickness, mDefaultStrokeThickness);
-                mProgressColor = typedArray.getInt(R.styleable.CircularProgressView_progressBarColor, DEFAULT_PROGRESS_COLOR);
-                mBackgroundColor = typedArray.getInt(R.styleable.CircularProgressView_backgroundColor, mProgressColor);
-            } finally {
-                typedArray.recycle();
-            }
-        } else {
-            mProgressStrokeThickness = mDefaultStrokeThickness;
-            mShadowEnabled = true;
-            mMax = DEFAULT_MAX;
-            mStartingAngle = DEFAULT_STARTING_ANGLE;
-            mProgressColor = DEFAULT_PROGRESS_COLOR;
-            mBackgroundColor = mProgressColor;
-        }
-
-        mBackgroundPaint.setColor(adjustAlpha(mBackgroundColor, DEFAULT_BACKGROUND_ALPHA));
-        mProgressPaint.setColor(mProgressColor);
-        mShadowPaint.setColor(adjustAlpha(Color.BLACK, 0.2f));
-        setThickness(mProgressStrokeThickness, false);
+        mSegmentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mSegmentPaint.setStyle(Paint.Style.STROKE);
+        mCommandBuffer = new DrawCommandBuffer();
+        mRendererPaints = new Paint[]{mBackgroundPaint, mProgressPaint, mShadowPaint};
+        mRecordedGeometry = new float[7];
+
+        StyleConfig config = StyleConfig.obtain(context, attrs, defStyleAttr, defStyleRes);
+        mState.setMax(config.max);
+        mState.setShadowEnabled(config.shadowEnabled);
+        mState.setThumbEnabled(config.thumbEnabled);
+        mState.setStartingAngle(config.startingAngle);
+        mState.setProgress(config.progress);
+        mState.setThickness(config.thickness);
+        mState.setProgressColor(config.progressColor);
+        mState.setBackgroundColor(config.backgroundColor);
+        mShadowPaint.setColor(DEFAULT_SHADOW_COLOR);
     }
 
     /**
@@ -137,8 +328,11 @@ public class CircularProgressView extends View {
      * @param size in pixels
      */
     public void setSize(int size) {
-        getLayoutParams().height = size;
-        requestLayout();
+        if (getLayoutParams().height != size) {
+            getLayoutParams().height = size;
+            mLayoutRequestCount++;
+            requestLayout();
+        }
     }
 
     /**
@@ -148,12 +342,12 @@ public class CircularProgressView extends View {
      * @param angle where the progress bar starts.
      */
     public void setStartingAngle(int angle) {
-        mStartingAngle = angle;
-        invalidate();
+        mState.setStartingAngle(angle);
+        invalidateState();
     }
 
     public int getStartingAngle() {
-        return mStartingAngle;
+        return mState.getStartingAngle();
     }
 
     /**
@@ -162,12 +356,12 @@ public class CircularProgressView extends View {
      * @param max value
      */
     public void setMax(int max) {
-        mMax = max;
-        invalidate();
+        mState.setMax(max);
+        invalidateState();
     }
 
     public int getMax() {
-        return mMax;
+        return mState.getMax();
     }
 
     /**
@@ -195,12 +389,11 @@ public class CircularProgressView extends View {
     }
 
     public void setProgressColor(int color) {
-        mProgressColor = color;
-        if (mBackgroundColor == -1) {
+        mState.setProgressColor(color);
+        if (mState.getBackgroundColor() == -1) {
             setBackgroundColor(color);
         }
-        mProgressPaint.setColor(color);
-        invalidate();
+        invalidateState();
     }
 
     /**
@@ -218,13 +411,35 @@ public class CircularProgressView extends View {
     }
 
     public int getProgressColor() {
-        return mProgressColor;
+        return mState.getProgressColor();
+    }
+
+    /**
+     * Paints progress, and thumb, with a sweep gradient that starts at {@link #getStartingAngle()} and goes clockwise.
+     * While set it takes precedence over {@link #setProgressColor(int)}.
+     * The shader is built once per size and colors, changing the starting angle only rotates it.
+     * Must be called from the main thread.
+     *
+     * @param colors    at least 2 colors, or null to go back to the solid progress color
+     * @param positions relative position, from 0 to 1, of each color, or null to spread them evenly
+     */
+    public void setProgressGradient(@Nullable int[] colors, @Nullable float[] positions) {
+        mGradient = colors != null ? new ProgressGradient(colors, positions) : null;
+        mProgressPaint.setShader(null);
+        invalidateState();
+    }
+
+    /**
+     * @return a copy of the gradient colors, or null when progress has a solid color
+     */
+    @Nullable
+    public int[] getProgressGradientColors() {
+        return mGradient != null ? mGradient.getColors() : null;
     }
 
     public void setBackgroundColor(int color) {
-        mBackgroundColor = color;
-        mBackgroundPaint.setColor(adjustAlpha(color, DEFAULT_BACKGROUND_ALPHA));
-        invalidate();
+        mState.setBackgroundColor(color);
+        invalidateState();
     }
 
     /**
@@ -242,25 +457,25 @@ public class CircularProgressView extends View {
     }
 
     public int getBackgroundColor() {
-        return mBackgroundColor;
+        return mState.getBackgroundColor();
     }
 
     public void setShadowEnabled(boolean enable) {
-        mShadowEnabled = enable;
-        invalidate();
+        mState.setShadowEnabled(enable);
+        invalidateState();
     }
 
     public boolean isShadowEnabled() {
-        return mShadowEnabled;
+        return mState.isShadowEnabled();
     }
 
     public void setProgressThumbEnabled(boolean enable) {
-        mProgressThumbEnabled = enable;
-        invalidate();
+        mState.setThumbEnabled(enable);
+        invalidateState();
     }
 
     public boolean isProgressThumbEnabled() {
-        return mProgressThumbEnabled;
+        return mState.isThumbEnabled();
     }
 
     /**
@@ -269,22 +484,35 @@ public class CircularProgressView extends View {
      * @param thickness in pixels
      */
     public void setProgressStrokeThickness(float thickness) {
-        setThickness(thickness, true);
+        mState.setThickness(thickness);
+        if (isMainThread()) {
+            onThicknessChanged();
+        } else {
+            post(mThicknessChangedRunnable);
+        }
     }
 
-    private void setThickness(float thickness, boolean requestLayout) {
-        mProgressStrokeThickness = thickness;
-        mProgressIconThickness = mProgressStrokeThickness / 2;
-        mBackgroundPaint.setStrokeWidth(mProgressStrokeThickness);
-        mProgressPaint.setStrokeWidth(mProgressStrokeThickness);
-        mShadowPaint.setStrokeWidth(mProgressStrokeThickness);
-        if (requestLayout) {
+    /**
+     * Measured size doesn't depend on thickness, so a layout pass is only needed when the current size can't fit the
+     * new thickness and onMeasure has to fall back to the last valid composition.
+     */
+    private void onThicknessChanged() {
+        int dim = Math.min(getWidth(), getHeight());
+        float thickness = mState.getThickness();
+        if (isValidComposition(dim, thickness)) {
+            //what onMeasure falls back to if a later thickness doesn't fit
+            mLastValidRawMeasuredDim = dim;
+            mLastValidStrokeThickness = thickness;
+            updateRects(dim);
+            invalidateState();
+        } else {
+            mLayoutRequestCount++;
             requestLayout();
         }
     }
 
     public float getProgressStrokeThickness() {
-        return mProgressStrokeThickness;
+        return mState.getThickness();
     }
 
     public void setProgress(float progress) {
@@ -300,7 +528,69 @@ public class CircularProgressView extends View {
     }
 
     public float getProgress() {
-        return mProgress;
+        return mState.getProgress();
+    }
+
+    /**
+     * Replaces the single progress arc with consecutive segments, laid out from {@link #getStartingAngle()} and each
+     * one relative to {@link #getMax()}. Segments sharing a color are drawn as a single path.
+     * Null, or empty, arrays go back to the single progress arc.
+     * Must be called from the main thread.
+     *
+     * @param values progress of each segment
+     * @param colors color of each segment, same length as values
+     */
+    public void setSegments(@Nullable float[] values, @Nullable int[] colors) {
+        if (values == null || colors == null || values.length == 0) {
+            mSegments = null;
+        } else {
+            if (mSegments == null) {
+                mSegments = new SegmentSet();
+            }
+            mSegments.set(values, colors);
+        }
+        updateTickerClients();
+        invalidateState();
+    }
+
+    public int getSegmentCount() {
+        return mSegments != null ? mSegments.getCount() : 0;
+    }
+
+    public void setSegmentProgress(int index, float progress) {
+        setSegmentProgress(index, progress, false);
+    }
+
+    public void setSegmentProgress(int index, float progress, boolean animate) {
+        setSegmentProgress(index, progress, animate, DEFAULT_ANIMATION_MILLIS);
+    }
+
+    /**
+     * Each segment animates on its own, all of them stepped by the frame loop shared with every other view.
+     * Must be called from the main thread.
+     */
+    public void setSegmentProgress(int index, float progress, boolean animate, long duration) {
+        if (mSegments == null) {
+            throw new IllegalStateException("no segments set");
+        }
+        float scale = animate ? AnimationTicker.getDurationScale(getContext()) : 0;
+        if (scale > 0) {
+            if (mMetrics != null) {
+                recordAnimationStart(mSegments.isAnimating(index));
+            }
+            mSegments.animate(index, progress, (long) (duration * 1000000L * scale));
+        } else {
+            mSegments.setValue(index, progress);
+        }
+        updateTickerClients();
+        invalidateState();
+    }
+
+    public float getSegmentProgress(int index) {
+        if (mSegments == null) {
+            throw new IllegalStateException("no segments set");
+        }
+        return mSegments.getValue(index);
     }
 
     public void resetProgress() {
@@ -319,70 +609,671 @@ public class CircularProgressView extends View {
         mInterpolator = interpolator == null ? DEFAULT_INTERPOLATOR : interpolator;
     }
 
+    /**
+     * Animated progress changes follow a critically damped spring instead of a fixed-duration tween.
+     * Each new target is picked up from the current value and velocity, so a continuous feed (seek bar, download)
+     * glides instead of restarting, and the animation ends once the arc is within a pixel of its target.
+     * Durations and {@link #setAnimationInterpolator(TimeInterpolator)} are ignored in this mode.
+     *
+     * @param enable false by default
+     */
+    public void setSpringAnimationEnabled(boolean enable) {
+        mSpringAnimationEnabled = enable;
+    }
+
+    public boolean isSpringAnimationEnabled() {
+        return mSpringAnimationEnabled;
+    }
+
+    /**
+     * @param stiffness spring stiffness, higher settles faster. 200 by default
+     * @throws IllegalArgumentException if stiffness isn't a finite value above 0, such a spring would never settle
+     */
+    public void setSpringStiffness(float stiffness) {
+        if (!(stiffness > 0) || Float.isInfinite(stiffness)) {
+            throw new IllegalArgumentException("stiffness must be a finite value above 0: " + stiffness);
+        }
+        mSpringStiffness = stiffness;
+    }
+
+    public float getSpringStiffness() {
+        return mSpringStiffness;
+    }
+
+    /**
+     * @return frames the current, or last, spring animation took to settle since it started from rest
+     */
+    public int getSettleFrameCount() {
+        return mProgressAnimator.getSettleFrames();
+    }
+
     public void setProgressAnimationCallback(OnProgressChangeAnimationCallback callback){
         mCallback = callback;
     }
 
+    /**
+     * Registers a listener that's called at most once every minIntervalMillis and only when progress moved by at least
+     * minDelta since its last delivery. Pending updates are coalesced into the latest value, and the latest value is
+     * always delivered before {@link OnProgressChangeAnimationCallback#onAnimationFinished(float)}.
+     * Must be called from the main thread.
+     *
+     * @param minIntervalMillis minimum time between two onProgressChanged calls, 0 for every frame
+     * @param minDelta          minimum progress change between two onProgressChanged calls, 0 for any change
+     * @param executor          to deliver on, should run tasks serially, or null for the main thread
+     */
+    public void addProgressListener(OnProgressChangeAnimationCallback listener, long minIntervalMillis, float minDelta, @Nullable Executor executor) {
+        removeProgressListener(listener);
+        mListeners.add(new ThrottledProgressListener(listener, Math.max(0, minIntervalMillis), Math.max(0, minDelta), executor));
+    }
+
+    public void removeProgressListener(OnProgressChangeAnimationCallback listener) {
+        for (int i = 0; i < mListeners.size(); i++) {
+            if (mListeners.get(i).getCallback() == listener) {
+                mListeners.remove(i).cancel();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Binds this view to a {@link ProgressSource} that may be updated from any thread.
+     * While attached to a window the source is sampled once per frame and the view is only invalidated when it changed.
+     * Must be called from the main thread.
+     *
+     * @param source to sample, or null to stop sampling
+     */
+    public void setProgressSource(ProgressSource source) {
+        mProgressSource = source;
+        mLastSampledCurrent = -1;
+        mLastSampledTotal = -1;
+        sampleProgressSource();
+        updateTickerClients();
+    }
+
+    public ProgressSource getProgressSource() {
+        return mProgressSource;
+    }
+
+    private void sampleProgressSource() {
+        if (mProgressSource == null) {
+            return;
+        }
+        long current = mProgressSource.getCurrent();
+        long total = mProgressSource.getTotal();
+        if (current != mLastSampledCurrent || total != mLastSampledTotal) {
+            mLastSampledCurrent = current;
+            mLastSampledTotal = total;
+            setProgressValue((float) (ProgressSource.fraction(current, total) * mState.getMax()));
+        }
+    }
+
+    /**
+     * In indeterminate mode progress is ignored and a rotating arc, whose sweep grows and shrinks, starts at
+     * {@link #getStartingAngle()}. Like every animation of this view it runs on a frame loop shared by all instances,
+     * only while the view is attached and shown.
+     * Must be called from the main thread.
+     *
+     * @param indeterminate true to show the "working..." spinner
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (mIndeterminate == indeterminate) {
+            return;
+        }
+        mIndeterminate = indeterminate;
+        mSpinner.reset();
+        updateTickerClients();
+        invalidateState();
+    }
+
+    public boolean isIndeterminate() {
+        return mIndeterminate;
+    }
+
+    /**
+     * Animations stop as soon as this view is detached or can't be seen (hidden itself or by an ancestor, window
+     * hidden) and no progress callback is delivered meanwhile. Once visible again they either resume where they were
+     * (default) or, when enabled, jump to their final value reporting it once.
+     *
+     * @param snap true to skip the remainder of animations that were interrupted while hidden
+     */
+    public void setSnapAnimationsWhenHidden(boolean snap) {
+        mSnapAnimationsWhenHidden = snap;
+    }
+
+    public boolean isSnapAnimationsWhenHidden() {
+        return mSnapAnimationsWhenHidden;
+    }
+
+    /**
+     * Meant for adapters recycling this view: stops any animation without reporting it, unbinds the
+     * {@link ProgressSource}, leaves indeterminate mode, clears segments and resets progress to 0.
+     * Appearance, the animation callback and registered listeners are kept, their pending throttled updates are dropped.
+     */
+    public void recycle() {
+        if (mMetrics != null && mProgressAnimator.isRunning()) {
+            mMetrics.recordAnimationCancel();
+        }
+        mProgressAnimator.reset();
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).cancel();
+        }
+        setProgressSource(null);
+        setIndeterminate(false);
+        setSegments(null, null);
+        setProgressValue(0);
+    }
+
+    private boolean isVisibleToUser() {
+        return mAttached && getWindowVisibility() == VISIBLE && isShown();
+    }
+
+    /**
+     * Subscribes this view's frame clients to the shared {@link AnimationTicker} only while they have work to do
+     * and the view can actually be seen, pausing the progress animation otherwise.
+     */
+    private void updateTickerClients() {
+        boolean active = isVisibleToUser();
+        if (!active) {
+            mProgressAnimator.pause();
+        } else if (mProgressAnimator.isPaused()) {
+            if (mSnapAnimationsWhenHidden) {
+                mProgressAnimator.end();
+            } else {
+                mProgressAnimator.resume();
+            }
+        }
+        AnimationTicker ticker = AnimationTicker.getInstance();
+        if (active && mProgressSource != null) {
+            ticker.add(mSourceClient);
+        } else {
+            ticker.remove(mSourceClient);
+        }
+        if (active && mIndeterminate) {
+            ticker.add(mIndeterminateClient);
+        } else {
+            ticker.remove(mIndeterminateClient);
+        }
+        if (mSegments == null || !mSegments.isAnimating()) {
+            mSegmentsPaused = false;
+            ticker.remove(mSegmentClient);
+        } else if (!active) {
+            mSegments.pause();
+            mSegmentsPaused = true;
+            ticker.remove(mSegmentClient);
+        } else if (mSegmentsPaused && mSnapAnimationsWhenHidden) {
+            mSegmentsPaused = false;
+            mSegments.end();
+            invalidateState();
+        } else {
+            mSegmentsPaused = false;
+            ticker.add(mSegmentClient);
+        }
+        scheduleLayerPolicy();
+    }
+
     private void setProgress(float progress, boolean animate, long duration, boolean clockwise) {
         if (animate) {
-            if (mProgressAnimator != null) {
-                mProgressAnimator.cancel();
+            float target = clockwise ? progress : 0;
+            float scale = AnimationTicker.getDurationScale(getContext());
+            if (mMetrics != null) {
+                //a running spring is retargeted, not cancelled
+                boolean retargets = scale != 0 && mSpringAnimationEnabled && mProgressAnimator.isSpringRunning();
+                recordAnimationStart(mProgressAnimator.isRunning() && !retargets);
             }
-            mProgressAnimator = getAnimator(getProgress(), clockwise ? progress : 0, duration, new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                    setProgressValue(((Float) valueAnimator.getAnimatedValue()));
-                    if (mCallback != null) {
-                        mCallback.onProgressChanged(mProgress);
-                    }
-                }
-            });
-            mProgressAnimator.addListener(new Animator.AnimatorListener() {
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    if (mCallback != null) {
-                        mCallback.onAnimationFinished(mProgress);
-                    }
-                }
+            if (scale == 0) {
+                //animations are off, like ValueAnimator jump to the end right away
+                mProgressAnimator.start(getProgress(), target, 0, mInterpolator);
+                mProgressAnimator.end();
+            } else if (mSpringAnimationEnabled) {
+                mProgressAnimator.springTo(getProgress(), target, (float) Math.sqrt(mSpringStiffness) / scale, getSettleThreshold());
+            } else {
+                mProgressAnimator.start(getProgress(), target, (long) (duration * scale), mInterpolator);
+            }
+            if (!isVisibleToUser()) {
+                mProgressAnimator.pause();
+            }
+            scheduleLayerPolicy();
+        } else {
+            setProgressValue(progress);
+        }
+    }
 
-                @Override
-                public void onAnimationStart(Animator animation) {
-                    //not in use
-                }
+    /**
+     * When enabled the static background ring (and the shadow ring once progress is complete) is rasterized once
+     * into a {@link LayerCache} shared by every view with the same size and thickness, and blitted on each frame.
+     * Views above {@link LayerCache#MAX_ENTRY_SIZE_BYTES} (about 720px) keep drawing vectors.
+     *
+     * @param enable false by default
+     */
+    public void setLayerCacheEnabled(boolean enable) {
+        mLayerCache = enable ? LayerCache.getInstance(getContext()) : null;
+        invalidateState();
+    }
 
-                @Override
-                public void onAnimationCancel(Animator animation) {
-                    //not in use
-                }
+    public boolean isLayerCacheEnabled() {
+        return mLayerCache != null;
+    }
 
-                @Override
-                public void onAnimationRepeat(Animator animation) {
-                    //not in use
-                }
-            });
-            mProgressAnimator.start();
+    /**
+     * When enabled this view promotes itself to a hardware layer while it animates (progress, segments or
+     * indeterminate), is translucent (alpha animations included) or while any ancestor's alpha, translation, scale or
+     * rotation changes, and goes back to no layer a couple of frames after they all rest. Those animations then
+     * recompose the layer instead of redrawing the ring. Ancestors are checked on each pre-draw pass of the window.
+     * Layers are accounted against the process-wide {@link HardwareLayerBudget}, views that don't fit keep drawing
+     * without one. A layer type set by the app is never overridden.
+     * Must be called from the main thread.
+     *
+     * @param enable false by default
+     */
+    public void setAutoHardwareLayerEnabled(boolean enable) {
+        mAutoHardwareLayer = enable;
+        updateAncestorListener();
+        scheduleLayerPolicy();
+    }
+
+    public boolean isAutoHardwareLayerEnabled() {
+        return mAutoHardwareLayer;
+    }
+
+    /**
+     * @return true while promoted to a hardware layer by {@link #setAutoHardwareLayerEnabled(boolean)}
+     */
+    public boolean isHardwareLayerPromoted() {
+        return mPromotedLayerBytes > 0;
+    }
+
+    /**
+     * Quantized mode for small rings that only need to show a few progress steps: the ring is drawn from a sprite atlas,
+     * shared through {@link RingAtlasCache} by every view with the same size and appearance, holding it at each step.
+     * Every frame is then a single bitmap blit of the nearest step, each step being rasterized once, the first time
+     * it's shown. Vectors are still drawn in indeterminate mode, with segments, a gradient or soft shadow, and when the
+     * rows of its atlas are too big for the cache. Only rows of steps actually shown are allocated.
+     * Must be called from the main thread.
+     *
+     * @param steps number of steps from 0 to max, 100 for whole percents, 0 to disable (default)
+     */
+    public void setQuantizedSteps(int steps) {
+        mQuantizedSteps = Math.max(0, steps);
+        mAtlasKey = null;
+        if (mQuantizedSteps > 0 && mAtlasCache == null) {
+            mAtlasCache = RingAtlasCache.getInstance(getContext());
+            mAtlasSrc = new Rect();
+            mAtlasDst = new Rect();
+        }
+        invalidateState();
+    }
+
+    public int getQuantizedSteps() {
+        return mQuantizedSteps;
+    }
+
+    /**
+     * Picks how the ring is drawn, for instance {@link RoundCapRingRenderer} to save the thumb's draw calls.
+     * Commands are recorded only when geometry or appearance change and replayed on every other frame.
+     * Quantized atlas cells are drawn with it too, the layer cache, soft shadow and segments keep their own drawing.
+     * Must be called from the main thread.
+     *
+     * @param renderer null for the default {@link StandardRingRenderer}
+     */
+    public void setRingRenderer(@Nullable RingRenderer renderer) {
+        mRingRenderer = renderer != null ? renderer : DEFAULT_RING_RENDERER;
+        invalidateState();
+    }
+
+    public RingRenderer getRingRenderer() {
+        return mRingRenderer;
+    }
+
+    /**
+     * @return commands replayed by the last frame drawn through the {@link RingRenderer}, not to be modified
+     */
+    public DrawCommandBuffer getDrawCommandBuffer() {
+        return mCommandBuffer;
+    }
+
+    /**
+     * When enabled this view records draw and measure times, invalidates, animation starts, cancels and frames and
+     * callback dispatch time into its own {@link RenderMetrics} and into {@link RenderMetrics#getGlobal()}.
+     * Disabled, each hook costs a single null check.
+     *
+     * @param enable false by default, enabling again starts from empty metrics
+     */
+    public void setMetricsEnabled(boolean enable) {
+        mMetrics = enable ? RenderMetrics.create() : null;
+    }
+
+    /**
+     * @return this view's metrics, or null when disabled
+     */
+    @Nullable
+    public RenderMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private void recordAnimationStart(boolean cancelsRunning) {
+        if (cancelsRunning) {
+            mMetrics.recordAnimationCancel();
+        }
+        mMetrics.recordAnimationStart();
+    }
+
+    private void dispatchProgressEvent(boolean finished) {
+        if (mMetrics == null) {
+            dispatchProgressEvent(getProgress(), finished);
+            return;
+        }
+        long start = System.nanoTime();
+        dispatchProgressEvent(getProgress(), finished);
+        mMetrics.recordCallback(System.nanoTime() - start);
+    }
+
+    private void dispatchProgressEvent(float progress, boolean finished) {
+        if (mCallback != null) {
+            if (finished) {
+                mCallback.onAnimationFinished(progress);
+            } else {
+                mCallback.onProgressChanged(progress);
+            }
+        }
+        for (int i = 0; i < mListeners.size(); i++) {
+            if (finished) {
+                mListeners.get(i).onAnimationFinished(progress);
+            } else {
+                mListeners.get(i).onProgressChanged(progress);
+            }
+        }
+    }
+
+    /**
+     * Layer changes are applied on the next loop, which also folds a cancel immediately followed by a start into
+     * no change at all, and keeps {@link #setLayerType(int, Paint)} away from draw passes.
+     */
+    private void scheduleLayerPolicy() {
+        if ((mAutoHardwareLayer || mPromotedLayerBytes > 0) && !mLayerPolicyPending) {
+            mLayerPolicyPending = true;
+            post(mLayerPolicyRunnable);
+        }
+    }
+
+    private void applyLayerPolicy() {
+        mLayerPolicyPending = false;
+        boolean animating = (mProgressAnimator.isRunning() && !mProgressAnimator.isPaused()) || mIndeterminate
+                || (mSegments != null && mSegments.isAnimating());
+        boolean wanted = mAutoHardwareLayer && isVisibleToUser() && getWidth() > 0 && getHeight() > 0 && (animating || mTranslucent || mAncestorAnimating);
+        long bytes = 4L * getWidth() * getHeight();
+        if (mPromotedLayerBytes > 0 && (!wanted || bytes != mPromotedLayerBytes)) {
+            demoteLayer();
+        }
+        if (wanted && mPromotedLayerBytes == 0 && getLayerType() == LAYER_TYPE_NONE && HardwareLayerBudget.acquire(bytes)) {
+            mPromotedLayerBytes = bytes;
+            setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    /**
+     * Ancestors are watched from the pre-draw pass only while the policy is enabled and this view is attached.
+     */
+    private void updateAncestorListener() {
+        boolean wanted = mAutoHardwareLayer && mAttached;
+        if (wanted == mAncestorListenerAdded) {
+            return;
+        }
+        mAncestorListenerAdded = wanted;
+        if (wanted) {
+            updateAncestorState();
+            getViewTreeObserver().addOnPreDrawListener(mAncestorListener);
         } else {
-            setProgressValue(progress);
+            getViewTreeObserver().removeOnPreDrawListener(mAncestorListener);
+            removeCallbacks(mAncestorRestCheck);
+            mAncestorAnimating = false;
+            mAncestorRestFrames = 0;
         }
     }
 
-    private void setProgressValue(float value) {
-        mProgress = value;
-        invalidate();
+    /**
+     * Keeps alpha, translation, scale and rotation of every ancestor.
+     *
+     * @return true if any of them changed since the last call
+     */
+    private boolean updateAncestorState() {
+        boolean changed = false;
+        int i = 0;
+        for (ViewParent parent = getParent(); parent instanceof View; parent = parent.getParent()) {
+            View view = (View) parent;
+            if (i + 8 > mAncestorState.length) {
+                float[] state = new float[Math.max(64, mAncestorState.length * 2)];
+                System.arraycopy(mAncestorState, 0, state, 0, mAncestorState.length);
+                mAncestorState = state;
+                changed = true;
+            }
+            changed |= setAncestorValue(i++, view.getAlpha());
+            changed |= setAncestorValue(i++, view.getTranslationX());
+            changed |= setAncestorValue(i++, view.getTranslationY());
+            changed |= setAncestorValue(i++, view.getScaleX());
+            changed |= setAncestorValue(i++, view.getScaleY());
+            changed |= setAncestorValue(i++, view.getRotation());
+            changed |= setAncestorValue(i++, view.getRotationX());
+            changed |= setAncestorValue(i++, view.getRotationY());
+        }
+        return changed;
+    }
+
+    private boolean setAncestorValue(int index, float value) {
+        if (mAncestorState[index] == value) {
+            return false;
+        }
+        mAncestorState[index] = value;
+        return true;
+    }
+
+    private void demoteLayer() {
+        if (mPromotedLayerBytes > 0) {
+            setLayerType(LAYER_TYPE_NONE, null);
+            HardwareLayerBudget.release(mPromotedLayerBytes);
+            mPromotedLayerBytes = 0;
+        }
+    }
+
+    /**
+     * When enabled the shadow is a blurred ring, rasterized once per size, thickness and blur radius into the shared
+     * {@link LayerCache}. Each frame only reveals the swept part of it through a clip, the blur is never recomputed.
+     * Views too big to be cached keep the hard edged shadow.
+     * Must be called from the main thread.
+     *
+     * @param enable false by default, where the shadow is a hard edged arc
+     */
+    public void setSoftShadowEnabled(boolean enable) {
+        if (enable && mShadowClipPath == null) {
+            mShadowClipPath = new Path();
+            mShadowClipRectF = new RectF();
+        }
+        mSoftShadowCache = enable ? LayerCache.getInstance(getContext()) : null;
+        invalidateState();
+    }
+
+    public boolean isSoftShadowEnabled() {
+        return mSoftShadowCache != null;
+    }
+
+    /**
+     * Limited to the space left between the ring and the view bounds.
+     * Must be called from the main thread.
+     *
+     * @param radius in pixels, 4dp by default
+     */
+    public void setShadowBlurRadius(float radius) {
+        mShadowBlurRadius = Math.max(0, radius);
+        invalidateState();
+    }
+
+    public float getShadowBlurRadius() {
+        return mShadowBlurRadius;
+    }
+
+    /**
+     * Total area, in pixels, this view asked to be redrawn since it was created or {@link #resetInvalidatedArea()} was called.
+     * Progress changes only invalidate the arc segment that moved, every other change invalidates the whole view.
+     *
+     * @return invalidated area in pixels
+     */
+    public long getInvalidatedArea() {
+        return mInvalidatedArea.get();
+    }
+
+    public void resetInvalidatedArea() {
+        mInvalidatedArea.set(0);
+    }
+
+    /**
+     * Progress changes that move the arc end by less than this distance don't trigger a redraw.
+     * Skipped changes accumulate until they cross it and the resting value is always drawn: at the end of an
+     * animation, or once it stayed unchanged for a frame.
+     *
+     * @param pixels 0.5 by default, 0 redraws on every change
+     */
+    public void setRedrawThreshold(float pixels) {
+        mRedrawThreshold = Math.max(0, pixels);
+    }
+
+    public float getRedrawThreshold() {
+        return mRedrawThreshold;
     }
 
-    private ValueAnimator getAnimator(double current, double next, long duration, ValueAnimator.AnimatorUpdateListener updateListener) {
-        ValueAnimator animator = new ValueAnimator();
-        animator.setInterpolator(mInterpolator);
-        animator.setDuration(duration);
-        animator.setObjectValues(current, next);
-        animator.setEvaluator(new FloatEvaluator() {
-            public Integer evaluate(float fraction, float startValue, float endValue) {
-                return Math.round(startValue + (endValue - startValue) * fraction);
+    /**
+     * @param suppress true to also skip {@link OnProgressChangeAnimationCallback#onProgressChanged(float)} for
+     *                 animation frames that weren't redrawn because of {@link #setRedrawThreshold(float)}
+     */
+    public void setSuppressCallbacksBelowThreshold(boolean suppress) {
+        mSuppressCallbacksBelowThreshold = suppress;
+    }
+
+    /**
+     * @return progress changes that were redrawn
+     */
+    public long getIssuedFrameCount() {
+        return mIssuedFrameCount;
+    }
+
+    /**
+     * @return progress changes that weren't redrawn because they moved the arc less than {@link #getRedrawThreshold()}
+     */
+    public long getSuppressedFrameCount() {
+        return mSuppressedFrameCount;
+    }
+
+    /**
+     * @return false if the change was too small to be redrawn yet
+     */
+    private boolean setProgressValue(float value) {
+        mState.setProgress(value);
+        if (!isMainThread() || mProgressRectF.isEmpty() || mState.getMax() <= 0) {
+            invalidateState();
+            return true;
+        }
+        if (value == mLastIssuedProgress) {
+            mHasSuppressedProgress = false;
+            return false;
+        }
+        //arc length moved at the outer edge of the stroke
+        float radius = mProgressRectF.width() / 2 + mState.getThickness() / 2;
+        float displacement = (float) Math.toRadians(360 * Math.abs(value - mLastIssuedProgress) / mState.getMax()) * radius;
+        if (displacement < mRedrawThreshold) {
+            mSuppressedFrameCount++;
+            if (!mHasSuppressedProgress) {
+                mHasSuppressedProgress = true;
+                mFlushCandidate = Float.NaN;
+                AnimationTicker.getInstance().add(mFlushClient);
             }
-        });
-        animator.addUpdateListener(updateListener);
-        return animator;
+            return false;
+        }
+        flushProgress();
+        return true;
+    }
+
+    /**
+     * @return progress distance that moves the arc end by the redraw threshold (or half a pixel when it's disabled)
+     */
+    private float getSettleThreshold() {
+        float pixels = mRedrawThreshold > 0 ? mRedrawThreshold : DEFAULT_REDRAW_THRESHOLD_PX;
+        float circumference = (float) (2 * Math.PI * (mProgressRectF.width() / 2 + mState.getThickness() / 2));
+        int max = mState.getMax();
+        return circumference > 0 ? pixels / circumference * max : max / 1000f;
+    }
+
+    private void flushProgress() {
+        float progress = mState.getProgress();
+        mHasSuppressedProgress = false;
+        if (progress != mLastIssuedProgress) {
+            mIssuedFrameCount++;
+            if (isMainThread() && !mProgressRectF.isEmpty() && mState.getMax() > 0) {
+                invalidateProgressSegment(mLastIssuedProgress, progress);
+            } else {
+                invalidateState();
+            }
+        }
+        mLastIssuedProgress = progress;
+    }
+
+    /**
+     * Invalidates the arc segment between both progress values, both thumbs and their shadows.
+     * In quantized mode that's between the steps they round to, nothing if it's the same step.
+     */
+    private void invalidateProgressSegment(float from, float to) {
+        int max = mState.getMax();
+        if (isQuantized()) {
+            //the atlas blits whole steps, the arc only moves when the rounded step does
+            from = quantize(from, max);
+            to = quantize(to, max);
+        }
+        if (from == to) {
+            return;
+        }
+        float thickness = mState.getThickness();
+        //half stroke covers both the stroke and the thumb (radius = thickness / 2), plus 1px for anti-aliasing
+        float outset = thickness / 2 + 1;
+        ArcGeometry.getSweepBounds(mProgressRectF.centerX(), mProgressRectF.centerY(), mProgressRectF.width() / 2,
+                mState.getStartingAngle(), 360 * from / max, 360 * to / max, outset, mDirtyBounds);
+        if (mState.isShadowEnabled()) {
+            mDirtyBounds[3] += mDefaultShadowPadding;
+            if (mSoftShadowCache != null) {
+                mDirtyBounds[0] -= mShadowBlurRadius;
+                mDirtyBounds[1] -= mShadowBlurRadius;
+                mDirtyBounds[2] += mShadowBlurRadius;
+                mDirtyBounds[3] += mShadowBlurRadius;
+            }
+        }
+        int left = (int) Math.floor(mDirtyBounds[0]);
+        int top = (int) Math.floor(mDirtyBounds[1]);
+        int right = (int) Math.ceil(mDirtyBounds[2]);
+        int bottom = (int) Math.ceil(mDirtyBounds[3]);
+        mInvalidatedArea.addAndGet((long) (right - left) * (bottom - top));
+        if (mMetrics != null) {
+            mMetrics.recordInvalidate();
+        }
+        invalidate(left, top, right, bottom);
+    }
+
+    /**
+     * Off the main thread the invalidate is posted, so the issued progress is only ever touched from the main thread.
+     * At most one is pending at a time, it draws whatever was last published when it runs.
+     */
+    private void invalidateState() {
+        if (!isMainThread()) {
+            if (mInvalidatePending.compareAndSet(false, true)) {
+                post(mInvalidateRunnable);
+            }
+            return;
+        }
+        mLastIssuedProgress = mState.getProgress();
+        mInvalidatedArea.addAndGet((long) getWidth() * getHeight());
+        if (mMetrics != null) {
+            mMetrics.recordInvalidate();
+        }
+        invalidate();
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
     }
 
     /**
@@ -392,7 +1283,7 @@ public class CircularProgressView extends View {
      * @param factor 1.0f (solid) to 0.0f (transparent)
      * @return int - A color with modified alpha
      */
-    private int adjustAlpha(int color, float factor) {
+    static int adjustAlpha(int color, float factor) {
         int alpha = Math.round(Color.alpha(color) * factor);
         int red = Color.red(color);
         int green = Color.green(color);
@@ -401,55 +1292,366 @@ public class CircularProgressView extends View {
     }
 
     @Override
-    protected synchronized void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        updateTickerClients();
+        updateAncestorListener();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttached = false;
+        updateTickerClients();
+        updateAncestorListener();
+        //layers are given back right away, not once this view is attached again
+        removeCallbacks(mLayerPolicyRunnable);
+        mLayerPolicyPending = false;
+        demoteLayer();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (mState != null) {
+            updateTickerClients();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateTickerClients();
+    }
+
+    /**
+     * Only dispatched from API 24, older versions rely on {@link #onVisibilityChanged(View, int)}
+     * and {@link #onWindowVisibilityChanged(int)}.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        if (mState != null) {
+            updateTickerClients();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMetrics == null) {
+            measureRing(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        long start = System.nanoTime();
+        measureRing(widthMeasureSpec, heightMeasureSpec);
+        mMetrics.recordMeasure(System.nanoTime() - start);
+    }
+
+    private void measureRing(int widthMeasureSpec, int heightMeasureSpec) {
+        mMeasurePassCount++;
+        if (widthMeasureSpec == mCachedWidthMeasureSpec && heightMeasureSpec == mCachedHeightMeasureSpec
+                && mState.getThickness() == mCachedMeasureThickness) {
+            setMeasuredDimension(mCachedMeasuredDim, mCachedMeasuredDim);
+            return;
+        }
+
         int width = MeasureSpec.getSize(widthMeasureSpec);
         int height = MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED ? MeasureSpec.getSize(heightMeasureSpec) : mDefaultMaxWidth;
 
         int rawMeasuredDim = Math.max(Math.min(width, height), 0);
-        float arcDim = mProgressStrokeThickness + mDefaultViewPadding;
-        mProgressRectF.set(arcDim, arcDim, rawMeasuredDim - arcDim, rawMeasuredDim - arcDim);
 
         //To avoid creating a messy composition
-        if (mProgressRectF.width() <= mProgressStrokeThickness) {
+        if (!isValidComposition(rawMeasuredDim, mState.getThickness())) {
             rawMeasuredDim = mLastValidRawMeasuredDim;
-            mProgressRectF.set(arcDim, arcDim, rawMeasuredDim - arcDim, rawMeasuredDim - arcDim);
-            setThickness(mLastValidStrokeThickness, false);
+            mState.setThickness(mLastValidStrokeThickness);
         }
         mLastValidRawMeasuredDim = rawMeasuredDim;
-        mLastValidStrokeThickness = mProgressStrokeThickness;
+        mLastValidStrokeThickness = mState.getThickness();
 
-        mShadowRectF.set(mProgressRectF.left, mDefaultShadowPadding + mProgressRectF.top, mProgressRectF.right, mDefaultShadowPadding + mProgressRectF.bottom);
+        mCachedWidthMeasureSpec = widthMeasureSpec;
+        mCachedHeightMeasureSpec = heightMeasureSpec;
+        mCachedMeasureThickness = mLastValidStrokeThickness;
+        mCachedMeasuredDim = rawMeasuredDim;
+        updateRects(rawMeasuredDim);
         setMeasuredDimension(rawMeasuredDim, rawMeasuredDim);
     }
 
     @Override
-    protected synchronized void onDraw(Canvas canvas) {
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateRects(Math.min(w, h));
+        if (mGradient != null) {
+            mGradient.invalidate();
+        }
+        //a refusal only holds for the size it was made for
+        mAtlasKey = null;
+        scheduleLayerPolicy();
+    }
+
+    @Override
+    protected boolean onSetAlpha(int alpha) {
+        boolean translucent = alpha < 255;
+        if (translucent != mTranslucent) {
+            mTranslucent = translucent;
+            scheduleLayerPolicy();
+        }
+        return super.onSetAlpha(alpha);
+    }
+
+    private boolean isValidComposition(int dim, float thickness) {
+        return dim - 2 * (thickness + mDefaultViewPadding) > thickness;
+    }
+
+    private void updateRects(int dim) {
+        layoutRects(dim, mState.getThickness(), mDefaultViewPadding, mDefaultShadowPadding, mProgressRectF, mShadowRectF);
+    }
+
+    /**
+     * Shared with {@link CircularProgressRenderer} so both draw the exact same ring.
+     */
+    static void layoutRects(int dim, float thickness, float viewPadding, float shadowPadding, RectF progressRectF, RectF shadowRectF) {
+        float arcDim = thickness + viewPadding;
+        progressRectF.set(arcDim, arcDim, dim - arcDim, dim - arcDim);
+        shadowRectF.set(progressRectF.left, shadowPadding + progressRectF.top, progressRectF.right, shadowPadding + progressRectF.bottom);
+    }
+
+    /**
+     * @return how many times onMeasure ran, cached results included
+     */
+    public int getMeasurePassCount() {
+        return mMeasurePassCount;
+    }
+
+    /**
+     * @return how many layout passes this view requested itself (size changes, or thickness changes the current size can't fit)
+     */
+    public int getLayoutRequestCount() {
+        return mLayoutRequestCount;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        if (mMetrics == null) {
+            drawRing(canvas);
+            return;
+        }
+        long start = System.nanoTime();
+        drawRing(canvas);
+        mMetrics.recordDraw(System.nanoTime() - start);
+    }
 
-        //Who doesn't love a bit of math? :)
-        //cos(a) = adj / hyp <>cos(angle) = x / radius <>x = cos(angle) * radius
-        //sin(a) = opp / hyp <>sin(angle) = y / radius <>y = sin(angle) * radius
-        //x = cos(startingAngle + progressAngle) * radius + originX(center)
-        //y = sin(startingAngle + progressAngle) * radius + originY(center)
-        float angle = 360 * mProgress / mMax;
-        float radius = getWidth() / 2 - mDefaultViewPadding - mProgressIconThickness - mProgressStrokeThickness / 2;
-        double endX = (Math.cos(Math.toRadians(mStartingAngle + angle)) * radius);
-        double endY = (Math.sin(Math.toRadians(mStartingAngle + angle)) * radius);
-        if (mShadowEnabled) {
-            if (mProgressThumbEnabled) {
-                canvas.drawCircle((float) endX + mShadowRectF.centerX(), (float) endY + mShadowRectF.centerY(), mProgressIconThickness, mShadowPaint);
+    private void drawRing(Canvas canvas) {
+        //Lock-free: a consistent copy of whatever setters (on any thread) last published
+        RenderState.Snapshot state = mDrawState;
+        int lastPaintVersion = state.paintVersion;
+        mState.read(state);
+        if (state.paintVersion != lastPaintVersion) {
+            applyPaints(state);
+        }
+        if (canQuantize() && drawQuantized(canvas, state)) {
+            return;
+        }
+
+        float startingAngle = state.startingAngle;
+        SegmentSet segments = mIndeterminate ? null : mSegments;
+        if (mIndeterminate) {
+            startingAngle += mSpinner.getRotation();
+            mGeometry.setProgress(mSpinner.getSweep());
+            mGeometry.setMax(360);
+        } else if (segments != null) {
+            segments.update(mProgressRectF, startingAngle, state.max);
+            mGeometry.setProgress(segments.getTotalSweep());
+            mGeometry.setMax(360);
+        } else {
+            mGeometry.setProgress(state.progress);
+            mGeometry.setMax(state.max);
+        }
+        mGeometry.setStartingAngle(startingAngle);
+        mGeometry.setThickness(state.thickness);
+        mGeometry.setSize(getWidth());
+
+        if (mGradient != null && mGradient.update(mProgressRectF.centerX(), mProgressRectF.centerY(), startingAngle)) {
+            mProgressPaint.setShader(mGradient.getShader());
+        }
+
+        float angle = mGeometry.getSweepAngle();
+        float endX = mGeometry.getThumbX();
+        float endY = mGeometry.getThumbY();
+        float thumbRadius = mGeometry.getThumbRadius();
+        Bitmap ring = mLayerCache != null ? mLayerCache.getRing(getLayerKey(state.thickness)) : null;
+        if (ring == null && mSoftShadowCache == null && segments == null) {
+            recordRing(startingAngle, angle, state);
+            mCommandBuffer.replay(canvas, mRendererPaints);
+            return;
+        }
+        if (state.shadowEnabled) {
+            if (state.thumbEnabled) {
+                canvas.drawCircle(endX + mShadowRectF.centerX(), endY + mShadowRectF.centerY(), thumbRadius, mShadowPaint);
+            }
+            if (mSoftShadowCache != null) {
+                drawSoftShadow(canvas, startingAngle, angle, state.thickness);
+            } else if (ring != null && angle >= 360) {
+                canvas.drawBitmap(ring, 0, mDefaultShadowPadding, mShadowPaint);
+            } else {
+                canvas.drawArc(mShadowRectF, startingAngle, angle, false, mShadowPaint);
+            }
+        }
+        if (ring != null) {
+            canvas.drawBitmap(ring, 0, 0, mBackgroundPaint);
+        } else {
+            canvas.drawOval(mProgressRectF, mBackgroundPaint);
+        }
+        if (segments != null) {
+            segments.draw(canvas, mSegmentPaint);
+        } else {
+            canvas.drawArc(mProgressRectF, startingAngle, angle, false, mProgressPaint);
+        }
+
+        if (state.thumbEnabled) {
+            Paint thumbPaint = mProgressPaint;
+            if (segments != null) {
+                thumbPaint = mSegmentPaint;
+                thumbPaint.setColor(segments.getLastVisibleColor(state.progressColor));
             }
-            canvas.drawArc(mShadowRectF, mStartingAngle, angle, false, mShadowPaint);
+            canvas.drawCircle(endX + mProgressRectF.centerX(), endY + mProgressRectF.centerY(), thumbRadius, thumbPaint);
+        }
+    }
+
+    /**
+     * Records the ring again only if the renderer, geometry or flags changed since the last recording.
+     */
+    private void recordRing(float startingAngle, float angle, RenderState.Snapshot state) {
+        float[] geometry = mRecordedGeometry;
+        float cx = mProgressRectF.centerX();
+        float cy = mProgressRectF.centerY();
+        float radius = mProgressRectF.width() / 2;
+        int flags = (state.shadowEnabled ? 1 : 0) | (state.thumbEnabled ? 2 : 0);
+        if (mRecordedRenderer == mRingRenderer && flags == mRecordedFlags && geometry[0] == cx && geometry[1] == cy
+                && geometry[2] == radius && geometry[3] == state.thickness && geometry[4] == mDefaultShadowPadding
+                && geometry[5] == startingAngle && geometry[6] == angle) {
+            return;
+        }
+        mRecordedRenderer = mRingRenderer;
+        mRecordedFlags = flags;
+        geometry[0] = cx;
+        geometry[1] = cy;
+        geometry[2] = radius;
+        geometry[3] = state.thickness;
+        geometry[4] = mDefaultShadowPadding;
+        geometry[5] = startingAngle;
+        geometry[6] = angle;
+        mCommandBuffer.reset();
+        mRingRenderer.record(cx, cy, radius, state.thickness, mDefaultShadowPadding, startingAngle, angle,
+                state.shadowEnabled, state.thumbEnabled, mCommandBuffer);
+    }
+
+    /**
+     * @return true if the ring can be drawn from an atlas, {@link #drawQuantized} then checks the current configuration
+     */
+    private boolean canQuantize() {
+        return mQuantizedSteps > 0 && !mIndeterminate && mSegments == null && mGradient == null && mSoftShadowCache == null;
+    }
+
+    /**
+     * @return true if the last drawn configuration wasn't refused an atlas, until the next draw checks it again
+     */
+    private boolean isQuantized() {
+        return canQuantize() && (mAtlasKey == null || !mAtlasKey.refused);
+    }
+
+    /**
+     * @return progress drawn by the atlas for this value
+     */
+    private float quantize(float progress, int max) {
+        float fraction = Math.max(0, Math.min(1, progress / max));
+        return Math.round(fraction * mQuantizedSteps) * max / (float) mQuantizedSteps;
+    }
+
+    /**
+     * @return false if the atlas isn't available and vectors have to be drawn
+     */
+    private boolean drawQuantized(Canvas canvas, RenderState.Snapshot state) {
+        int size = Math.min(getWidth(), getHeight());
+        if (size <= 0) {
+            return false;
         }
-        canvas.drawOval(mProgressRectF, mBackgroundPaint);
-        canvas.drawArc(mProgressRectF, mStartingAngle, angle, false, mProgressPaint);
+        int steps = mQuantizedSteps;
+        float fraction = state.max > 0 ? Math.max(0, Math.min(1, state.progress / state.max)) : 0;
+        int step = Math.round(fraction * steps);
+        if (mAtlasKey == null || !mAtlasKey.matches(size, state.thickness, state.progressColor, state.backgroundColor,
+                state.startingAngle, state.thumbEnabled, state.shadowEnabled, steps, mRingRenderer)) {
+            mAtlasKey = new RingAtlasCache.Key(size, state.thickness, state.progressColor, state.backgroundColor,
+                    state.startingAngle, state.thumbEnabled, state.shadowEnabled, steps, mRingRenderer);
+        }
+        RingAtlasCache.Atlas atlas = mAtlasCache.getAtlas(mAtlasKey);
+        if (atlas == null) {
+            return false;
+        }
+        Bitmap page = mAtlasCache.getCell(atlas, step, mAtlasSrc);
+        mAtlasDst.set(0, 0, size, size);
+        canvas.drawBitmap(page, mAtlasSrc, mAtlasDst, null);
+        return true;
+    }
 
-        if (mProgressThumbEnabled) {
-            canvas.drawCircle((float) endX + mProgressRectF.centerX(), (float) endY + mProgressRectF.centerY(), mProgressIconThickness, mProgressPaint);
+    private void drawSoftShadow(Canvas canvas, float startingAngle, float angle, float thickness) {
+        if (angle <= 0) {
+            return;
+        }
+        Bitmap shadow = mSoftShadowCache.getRing(getSoftShadowKey(thickness));
+        if (shadow == null) {
+            canvas.drawArc(mShadowRectF, startingAngle, angle, false, mShadowPaint);
+            return;
         }
+        if (angle >= 360) {
+            canvas.drawBitmap(shadow, 0, mDefaultShadowPadding, mShadowPaint);
+            return;
+        }
+        //wedge from the shadow's center reaching past the blurred outer edge
+        float cx = mShadowRectF.centerX();
+        float cy = mShadowRectF.centerY();
+        float reach = mShadowRectF.width() / 2 + thickness + mShadowBlurRadius;
+        mShadowClipRectF.set(cx - reach, cy - reach, cx + reach, cy + reach);
+        mShadowClipPath.rewind();
+        mShadowClipPath.moveTo(cx, cy);
+        mShadowClipPath.arcTo(mShadowClipRectF, startingAngle, angle);
+        mShadowClipPath.close();
+        int count = canvas.save();
+        canvas.clipPath(mShadowClipPath);
+        canvas.drawBitmap(shadow, 0, mDefaultShadowPadding, mShadowPaint);
+        canvas.restoreToCount(count);
+    }
+
+    private LayerCache.Key getSoftShadowKey(float thickness) {
+        int size = (int) Math.ceil(mProgressRectF.right + mProgressRectF.left);
+        //the blur can't spread past the bitmap bounds
+        float blur = Math.max(0, Math.min(mShadowBlurRadius, mProgressRectF.left - thickness / 2));
+        if (mSoftShadowKey == null || !mSoftShadowKey.matches(size, mProgressRectF.left, thickness, blur)) {
+            mSoftShadowKey = new LayerCache.Key(size, mProgressRectF.left, thickness, blur);
+        }
+        return mSoftShadowKey;
+    }
+
+    private LayerCache.Key getLayerKey(float thickness) {
+        int size = (int) Math.ceil(mProgressRectF.right + mProgressRectF.left);
+        if (mLayerKey == null || !mLayerKey.matches(size, mProgressRectF.left, thickness)) {
+            mLayerKey = new LayerCache.Key(size, mProgressRectF.left, thickness);
+        }
+        return mLayerKey;
+    }
+
+    private void applyPaints(RenderState.Snapshot state) {
+        mBackgroundPaint.setColor(adjustAlpha(state.backgroundColor, DEFAULT_BACKGROUND_ALPHA));
+        mProgressPaint.setColor(state.progressColor);
+        mBackgroundPaint.setStrokeWidth(state.thickness);
+        mProgressPaint.setStrokeWidth(state.thickness);
+        mShadowPaint.setStrokeWidth(state.thickness);
+        mSegmentPaint.setStrokeWidth(state.thickness);
     }
 
-    private int convertDpToPx(Context context, float dp) {
+    static int convertDpToPx(Context context, float dp) {
         return (int) (dp * context.getResources().getDisplayMetrics().density + 0.5f);
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.github.guilhe.circularprogressview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Compact, reusable list of ring draw commands recorded by a {@link RingRenderer} and replayed onto a {@link Canvas}.
+ * <p>
+ * Commands are kept in primitive arrays: an op code and a paint slot per command and a fixed number of float operands
+ * (center x, center y, radius, start angle, sweep angle). Recording again after {@link #reset()} reuses the arrays, so
+ * steady state recording and replaying don't allocate.
+ * Everything but {@link #replay(Canvas, Paint[])} is Android-free, commands and their coverage can be inspected
+ * in plain JVM tests.
+ */
+@SuppressWarnings("unused")
+public final class DrawCommandBuffer {
+
+    /**
+     * Full oval: cx, cy, radius.
+     */
+    public static final int OP_OVAL = 0;
+    /**
+     * Arc with the paint's own cap: cx, cy, radius, start angle, sweep angle.
+     */
+    public static final int OP_ARC = 1;
+    /**
+     * Arc drawn with {@link Paint.Cap#ROUND}, whatever the paint's cap: cx, cy, radius, start angle, sweep angle.
+     */
+    public static final int OP_ROUND_ARC = 2;
+    /**
+     * Circle: cx, cy, radius.
+     */
+    public static final int OP_CIRCLE = 3;
+
+    private static final int OPERANDS = 5;
+
+    private int[] mOps = new int[8];
+    private int[] mPaints = new int[8];
+    private float[] mOperands = new float[8 * OPERANDS];
+    private int mCount;
+    private RectF mRectF;
+
+    public void reset() {
+        mCount = 0;
+    }
+
+    public void addOval(int paint, float cx, float cy, float radius) {
+        add(OP_OVAL, paint, cx, cy, radius, 0, 360);
+    }
+
+    public void addArc(int paint, float cx, float cy, float radius, float startAngle, float sweepAngle) {
+        add(OP_ARC, paint, cx, cy, radius, startAngle, sweepAngle);
+    }
+
+    public void addRoundArc(int paint, float cx, float cy, float radius, float startAngle, float sweepAngle) {
+        add(OP_ROUND_ARC, paint, cx, cy, radius, startAngle, sweepAngle);
+    }
+
+    public void addCircle(int paint, float cx, float cy, float radius) {
+        add(OP_CIRCLE, paint, cx, cy, radius, 0, 360);
+    }
+
+    private void add(int op, int paint, float cx, float cy, float radius, float startAngle, float sweepAngle) {
+        if (mCount == mOps.length) {
+            mOps = Arrays.copyOf(mOps, mCount * 2);
+            mPaints = Arrays.copyOf(mPaints, mCount * 2);
+            mOperands = Arrays.copyOf(mOperands, mCount * 2 * OPERANDS);
+        }
+        mOps[mCount] = op;
+        mPaints[mCount] = paint;
+        int i = mCount * OPERANDS;
+        mOperands[i] = cx;
+        mOperands[i + 1] = cy;
+        mOperands[i + 2] = radius;
+        mOperands[i + 3] = startAngle;
+        mOperands[i + 4] = sweepAngle;
+        mCount++;
+    }
+
+    /**
+     * @return number of draw calls a replay issues
+     */
+    public int getCommandCount() {
+        return mCount;
+    }
+
+    public int getOp(int command) {
+        return mOps[command];
+    }
+
+    public int getPaint(int command) {
+        return mPaints[command];
+    }
+
+    /**
+     * @param operand 0 center x, 1 center y, 2 radius, 3 start angle, 4 sweep angle
+     */
+    public float getOperand(int command, int operand) {
+        return mOperands[command * OPERANDS + operand];
+    }
+
+    public int getOpCount(int op) {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mOps[i] == op) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sum of the areas every command paints when stroked with strokeWidth, pixels covered more than once are counted
+     * each time. Divided by the area actually covered it gives the overdraw. Round caps are counted as two half discs.
+     *
+     * @return area in pixels
+     */
+    public double getPaintedArea(float strokeWidth) {
+        double area = 0;
+        float half = strokeWidth / 2;
+        for (int i = 0; i < mCount; i++) {
+            int o = i * OPERANDS;
+            float radius = mOperands[o + 2];
+            if (mOps[i] == OP_CIRCLE) {
+                float inner = Math.max(0, radius - half);
+                area += Math.PI * ((radius + half) * (radius + half) - inner * inner);
+            } else {
+                float sweep = Math.min(360, Math.abs(mOperands[o + 4]));
+                area += Math.PI * 2 * radius * strokeWidth * sweep / 360;
+                if (mOps[i] == OP_ROUND_ARC && sweep > 0 && sweep < 360) {
+                    area += Math.PI * half * half;
+                }
+            }
+        }
+        return area;
+    }
+
+    /**
+     * @param paints indexed by the paint slot of each command
+     */
+    public void replay(Canvas canvas, Paint[] paints) {
+        //created here so recording stays usable without the Android framework
+        if (mRectF == null) {
+            mRectF = new RectF();
+        }
+        for (int i = 0; i < mCount; i++) {
+            int o = i * OPERANDS;
+            float cx = mOperands[o];
+            float cy = mOperands[o + 1];
+            float radius = mOperands[o + 2];
+            Paint paint = paints[mPaints[i]];
+            switch (mOps[i]) {
+                case OP_OVAL:
+                    mRectF.set(cx - radius, cy - radius, cx + radius, cy + radius);
+                    canvas.drawOval(mRectF, paint);
+                    break;
+                case OP_ARC:
+                    mRectF.set(cx - radius, cy - radius, cx + radius, cy + radius);
+                    canvas.drawArc(mRectF, mOperands[o + 3], mOperands[o + 4], false, paint);
+                    break;
+                case OP_ROUND_ARC:
+                    mRectF.set(cx - radius, cy - radius, cx + radius, cy + radius);
+                    Paint.Cap cap = paint.getStrokeCap();
+                    paint.setStrokeCap(Paint.Cap.ROUND);
+                    canvas.drawArc(mRectF, mOperands[o + 3], mOperands[o + 4], false, paint);
+                    paint.setStrokeCap(cap);
+                    break;
+                case OP_CIRCLE:
+                    canvas.drawCircle(cx, cy, radius, paint);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * Process-wide memory budget for the hardware layers views of this library promote themselves to, see
+ * {@link CircularProgressView#setAutoHardwareLayerEnabled(boolean)}.
+ * <p>
+ * A layer is accounted as width * height * 4 bytes. Once the budget is used up further promotions are denied and
+ * those views keep drawing without a layer, so many animating rings never allocate more than {@link #getMaxBytes()}.
+ */
+@SuppressWarnings("unused")
+public final class HardwareLayerBudget {
+
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static long sMaxBytes = DEFAULT_MAX_BYTES;
+    private static long sBytesInUse;
+    private static long sPeakBytes;
+    private static int sLayerCount;
+    private static int sPromotionCount;
+    private static int sDemotionCount;
+    private static int sDeniedCount;
+
+    private HardwareLayerBudget() {
+    }
+
+    /**
+     * @return true if the layer fits and was accounted, it must then be given back through {@link #release(long)}
+     */
+    static synchronized boolean acquire(long bytes) {
+        if (sBytesInUse + bytes > sMaxBytes) {
+            sDeniedCount++;
+            return false;
+        }
+        sBytesInUse += bytes;
+        sPeakBytes = Math.max(sPeakBytes, sBytesInUse);
+        sLayerCount++;
+        sPromotionCount++;
+        return true;
+    }
+
+    static synchronized void release(long bytes) {
+        sBytesInUse -= bytes;
+        sLayerCount--;
+        sDemotionCount++;
+    }
+
+    /**
+     * Layers already promoted are kept, a smaller budget only applies to the next promotions.
+     */
+    public static synchronized void setMaxBytes(long maxBytes) {
+        sMaxBytes = maxBytes;
+    }
+
+    public static synchronized long getMaxBytes() {
+        return sMaxBytes;
+    }
+
+    public static synchronized long getBytesInUse() {
+        return sBytesInUse;
+    }
+
+    public static synchronized long getPeakBytes() {
+        return sPeakBytes;
+    }
+
+    /**
+     * @return views currently promoted
+     */
+    public static synchronized int getLayerCount() {
+        return sLayerCount;
+    }
+
+    public static synchronized int getPromotionCount() {
+        return sPromotionCount;
+    }
+
+    public static synchronized int getDemotionCount() {
+        return sDemotionCount;
+    }
+
+    /**
+     * @return promotions refused because the budget was used up
+     */
+    public static synchronized int getDeniedCount() {
+        return sDeniedCount;
+    }
+
+    /**
+     * Resets counters and peak, layers in use stay accounted.
+     */
+    public static synchronized void resetStats() {
+        sPeakBytes = sBytesInUse;
+        sPromotionCount = 0;
+        sDemotionCount = 0;
+        sDeniedCount = 0;
+    }
+}
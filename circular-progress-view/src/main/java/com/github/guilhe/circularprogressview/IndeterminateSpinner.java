@@ -0,0 +1,46 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * Android-free timing of the indeterminate mode: an arc that keeps rotating while its sweep grows and shrinks.
+ */
+final class IndeterminateSpinner {
+
+    private static final long ROTATION_PERIOD_NANOS = 2000 * 1000000L;
+    private static final long SWEEP_PERIOD_NANOS = 1333 * 1000000L;
+    private static final float MIN_SWEEP = 20;
+    private static final float MAX_SWEEP = 290;
+
+    private long mStartNanos = -1;
+    private float mRotation;
+    private float mSweep = MIN_SWEEP;
+
+    void reset() {
+        mStartNanos = -1;
+        mRotation = 0;
+        mSweep = MIN_SWEEP;
+    }
+
+    void step(long frameTimeNanos) {
+        if (mStartNanos < 0) {
+            mStartNanos = frameTimeNanos;
+        }
+        long elapsed = frameTimeNanos - mStartNanos;
+        mRotation = 360f * (elapsed % ROTATION_PERIOD_NANOS) / ROTATION_PERIOD_NANOS;
+        float phase = 360f * (elapsed % SWEEP_PERIOD_NANOS) / SWEEP_PERIOD_NANOS;
+        mSweep = MIN_SWEEP + (MAX_SWEEP - MIN_SWEEP) * (1 - ArcGeometry.cos(phase)) / 2;
+    }
+
+    /**
+     * @return degrees to add to the starting angle
+     */
+    float getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * @return arc length in degrees
+     */
+    float getSweep() {
+        return mSweep;
+    }
+}
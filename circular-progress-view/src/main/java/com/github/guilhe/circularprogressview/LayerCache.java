@@ -0,0 +1,177 @@
+package com.github.guilhe.circularprogressview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of pre-rasterized static rings shared by every {@link CircularProgressView}.
+ * <p>
+ * Rings are stored as {@link Bitmap.Config#ALPHA_8} masks and tinted by the paint they're drawn with, so one entry
+ * serves any background color/alpha and the full shadow ring of every view with the same geometry.
+ * Soft shadows are kept the same way, blurred once when rasterized, so blur radius is part of the key but color isn't.
+ * Entries are evicted by LRU once {@link #MAX_SIZE_BYTES} is exceeded and the cache trims itself on {@link #onTrimMemory(int)}.
+ * Rings bigger than {@link #MAX_ENTRY_SIZE_BYTES} are refused, so a few large views can't evict each other on every frame,
+ * and the caller draws vectors instead.
+ */
+@SuppressWarnings("unused")
+public final class LayerCache implements ComponentCallbacks2 {
+
+    public static final int MAX_SIZE_BYTES = 2 * 1024 * 1024;
+    public static final int MAX_ENTRY_SIZE_BYTES = MAX_SIZE_BYTES / 4;
+
+    private static LayerCache sInstance;
+
+    private final LruCache<Key, Bitmap> mCache;
+    private final Paint mRasterPaint;
+    private final RectF mRasterRectF;
+
+    static final class Key {
+        final int size;
+        final float inset;
+        final float thickness;
+        final float blur;
+
+        Key(int size, float inset, float thickness) {
+            this(size, inset, thickness, 0);
+        }
+
+        /**
+         * @param blur radius of a {@link BlurMaskFilter} applied once while rasterizing, 0 for a hard edged ring
+         */
+        Key(int size, float inset, float thickness, float blur) {
+            this.size = size;
+            this.inset = inset;
+            this.thickness = thickness;
+            this.blur = blur;
+        }
+
+        boolean matches(int size, float inset, float thickness) {
+            return matches(size, inset, thickness, 0);
+        }
+
+        boolean matches(int size, float inset, float thickness, float blur) {
+            return this.size == size && this.inset == inset && this.thickness == thickness && this.blur == blur;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return matches(key.size, key.inset, key.thickness, key.blur);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = size;
+            result = 31 * result + Float.floatToIntBits(inset);
+            result = 31 * result + Float.floatToIntBits(thickness);
+            result = 31 * result + Float.floatToIntBits(blur);
+            return result;
+        }
+    }
+
+    private LayerCache() {
+        mCache = new LruCache<Key, Bitmap>(MAX_SIZE_BYTES) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        mRasterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mRasterPaint.setStyle(Paint.Style.STROKE);
+        mRasterRectF = new RectF();
+    }
+
+    /**
+     * @param context any context, only its application context is retained to receive trim memory events
+     */
+    public static synchronized LayerCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LayerCache();
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the ring mask for the given geometry, rasterizing it on a miss.
+     *
+     * @param key size of the square view, inset of the ring's center line rect, stroke thickness and blur radius
+     * @return an {@link Bitmap.Config#ALPHA_8} bitmap sized key.size x key.size, or null if it's too big to be cached
+     */
+    Bitmap getRing(Key key) {
+        if ((long) key.size * key.size > MAX_ENTRY_SIZE_BYTES) {
+            return null;
+        }
+        Bitmap ring = mCache.get(key);
+        if (ring == null) {
+            ring = rasterizeRing(key);
+            mCache.put(key, ring);
+        }
+        return ring;
+    }
+
+    private synchronized Bitmap rasterizeRing(Key key) {
+        Bitmap ring = Bitmap.createBitmap(key.size, key.size, Bitmap.Config.ALPHA_8);
+        mRasterPaint.setStrokeWidth(key.thickness);
+        //software canvas, where mask filters are always supported
+        mRasterPaint.setMaskFilter(key.blur > 0 ? new BlurMaskFilter(key.blur, BlurMaskFilter.Blur.NORMAL) : null);
+        mRasterRectF.set(key.inset, key.inset, key.size - key.inset, key.size - key.inset);
+        new Canvas(ring).drawOval(mRasterRectF, mRasterPaint);
+        return ring;
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return bytes currently held
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            mCache.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        //not in use
+    }
+}
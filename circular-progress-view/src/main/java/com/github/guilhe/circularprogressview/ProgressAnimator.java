@@ -0,0 +1,227 @@
+package com.github.guilhe.circularprogressview;
+
+import android.animation.TimeInterpolator;
+
+/**
+ * A single, retargetable progress animation stepped by the shared {@link AnimationTicker}.
+ * <p>
+ * Runs either a fixed-duration tween, through the caller's interpolator, or a critically damped spring that keeps its
+ * velocity across retargets and settles once it's within a given precision of the target.
+ * Both are evaluated in closed form on primitive floats: retargeting or running a frame doesn't allocate nor box values.
+ */
+final class ProgressAnimator implements AnimationTicker.Client {
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+    private static final float SETTLE_FRAME_SECONDS = 1 / 60f;
+
+    interface Listener {
+        void onAnimationUpdate(float value);
+
+        void onAnimationEnd();
+    }
+
+    private final Listener mListener;
+    private TimeInterpolator mInterpolator;
+    private float mFrom;
+    private float mTo;
+    private float mValue;
+    private long mDurationNanos;
+    private long mStartNanos;
+    private long mLastFrameNanos;
+    private long mElapsedNanos;
+    private boolean mRunning;
+    private boolean mPaused;
+    private int mGeneration;
+
+    private boolean mSpring;
+    private float mOmega;
+    private float mSettleThreshold;
+    private float mStartVelocity;
+    private float mVelocity;
+    private int mSettleFrames;
+
+    ProgressAnimator(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Cancels any running animation (which reports its end) and starts a new one on the next frame.
+     */
+    void start(float from, float to, long duration, TimeInterpolator interpolator) {
+        cancel();
+        mSpring = false;
+        mFrom = from;
+        mTo = to;
+        mInterpolator = interpolator;
+        mDurationNanos = duration * 1000000L;
+        mStartNanos = -1;
+        mElapsedNanos = 0;
+        mRunning = true;
+        mPaused = false;
+        mGeneration++;
+        AnimationTicker.getInstance().add(this);
+    }
+
+    /**
+     * Springs towards a new target. A running spring is retargeted from its current value and velocity without
+     * reporting an end, anything else is cancelled and the spring starts from value at rest.
+     *
+     * @param value           current value, only used when no spring is running
+     * @param to              target
+     * @param omega           natural frequency in rad/s, sqrt(stiffness)
+     * @param settleThreshold distance to the target, in value units, under which the spring is considered at rest
+     */
+    void springTo(float value, float to, float omega, float settleThreshold) {
+        if (mRunning && mSpring) {
+            //re-base the closed form on the last evaluated frame
+            if (mStartNanos >= 0 && !mPaused) {
+                mStartNanos = mLastFrameNanos;
+            } else {
+                mStartNanos = -1;
+                mElapsedNanos = 0;
+            }
+            mStartVelocity = mVelocity;
+        } else {
+            cancel();
+            mValue = value;
+            mStartVelocity = 0;
+            mVelocity = 0;
+            mStartNanos = -1;
+            mElapsedNanos = 0;
+            mSettleFrames = 0;
+            mRunning = true;
+            mPaused = false;
+            AnimationTicker.getInstance().add(this);
+        }
+        mSpring = true;
+        mFrom = mValue;
+        mTo = to;
+        mOmega = omega;
+        mSettleThreshold = settleThreshold;
+        mGeneration++;
+    }
+
+    /**
+     * Stops where it is and reports the end, like {@link android.animation.Animator#cancel()}.
+     */
+    void cancel() {
+        if (mRunning) {
+            reset();
+            mListener.onAnimationEnd();
+        }
+    }
+
+    /**
+     * Stops without reporting anything.
+     */
+    void reset() {
+        mRunning = false;
+        mPaused = false;
+        AnimationTicker.getInstance().remove(this);
+    }
+
+    /**
+     * Stops receiving frames, {@link #resume()} continues from the same point in time.
+     */
+    void pause() {
+        if (mRunning && !mPaused) {
+            mPaused = true;
+            mElapsedNanos = mStartNanos < 0 ? mElapsedNanos : mLastFrameNanos - mStartNanos;
+            AnimationTicker.getInstance().remove(this);
+        }
+    }
+
+    void resume() {
+        if (mRunning && mPaused) {
+            mPaused = false;
+            //realigned with mElapsedNanos on the next frame
+            mStartNanos = -1;
+            AnimationTicker.getInstance().add(this);
+        }
+    }
+
+    boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Jumps to the target value and reports the end, like {@link android.animation.Animator#end()}.
+     */
+    void end() {
+        if (mRunning) {
+            mValue = mTo;
+            mVelocity = 0;
+            mListener.onAnimationUpdate(mTo);
+            cancel();
+        }
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * @return true if a spring is running, {@link #springTo(float, float, float, float)} retargets it without a cancel
+     */
+    boolean isSpringRunning() {
+        return mRunning && mSpring;
+    }
+
+    float getTarget() {
+        return mTo;
+    }
+
+    /**
+     * @return frames the current, or last, spring run has been stepped for since it started from rest
+     */
+    int getSettleFrames() {
+        return mSettleFrames;
+    }
+
+    @Override
+    public boolean onTick(long frameTimeNanos) {
+        if (!mRunning || mPaused) {
+            return false;
+        }
+        if (mStartNanos < 0) {
+            mStartNanos = frameTimeNanos - mElapsedNanos;
+        }
+        mLastFrameNanos = frameTimeNanos;
+        boolean finished;
+        if (mSpring) {
+            finished = stepSpring((frameTimeNanos - mStartNanos) / NANOS_PER_SECOND);
+        } else {
+            float fraction = mDurationNanos > 0 ? Math.min(1f, (float) (frameTimeNanos - mStartNanos) / mDurationNanos) : 1f;
+            mValue = mFrom + (mTo - mFrom) * mInterpolator.getInterpolation(fraction);
+            finished = fraction >= 1;
+        }
+        int generation = mGeneration;
+        mListener.onAnimationUpdate(mValue);
+        //listeners may have restarted or cancelled this animator
+        if (generation == mGeneration && mRunning && finished) {
+            mRunning = false;
+            mListener.onAnimationEnd();
+        }
+        return mRunning;
+    }
+
+    /**
+     * Critically damped spring: x(t) = to + (c1 + c2 * t) * e^(-omega * t), c1 = x0 - to, c2 = v0 + omega * c1
+     *
+     * @return true once settled
+     */
+    private boolean stepSpring(float seconds) {
+        mSettleFrames++;
+        float c1 = mFrom - mTo;
+        float c2 = mStartVelocity + mOmega * c1;
+        float decay = (float) Math.exp(-mOmega * seconds);
+        mValue = mTo + (c1 + c2 * seconds) * decay;
+        mVelocity = (c2 - mOmega * (c1 + c2 * seconds)) * decay;
+        if (Math.abs(mValue - mTo) < mSettleThreshold && Math.abs(mVelocity) * SETTLE_FRAME_SECONDS < mSettleThreshold) {
+            mValue = mTo;
+            mVelocity = 0;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.guilhe.circularprogressview;
+
+import android.graphics.Matrix;
+import android.graphics.SweepGradient;
+
+/**
+ * A {@link SweepGradient} built once per (center, colors, positions) and rotated to the starting angle through its
+ * local matrix, which is only touched when that angle changes. Steady frames don't allocate nor call into the shader.
+ * Must be used from the main thread.
+ */
+final class ProgressGradient {
+
+    private final int[] mColors;
+    private final float[] mPositions;
+    private final Matrix mMatrix = new Matrix();
+    private SweepGradient mShader;
+    private float mCenterX;
+    private float mCenterY;
+    private float mAngle;
+
+    /**
+     * @param colors    at least 2, distributed clockwise from the starting angle
+     * @param positions same length as colors, from 0 to 1, or null to spread colors evenly
+     */
+    ProgressGradient(int[] colors, float[] positions) {
+        if (colors.length < 2) {
+            throw new IllegalArgumentException("a gradient needs at least 2 colors");
+        }
+        if (positions != null && positions.length != colors.length) {
+            throw new IllegalArgumentException("colors and positions must have the same length");
+        }
+        mColors = colors.clone();
+        mPositions = positions != null ? positions.clone() : null;
+    }
+
+    int[] getColors() {
+        return mColors.clone();
+    }
+
+    /**
+     * Drops the shader, the next {@link #update(float, float, float)} builds a new one.
+     */
+    void invalidate() {
+        mShader = null;
+    }
+
+    /**
+     * @return true if a new shader was built and has to be set on the paint
+     */
+    boolean update(float centerX, float centerY, float startingAngle) {
+        boolean created = false;
+        if (mShader == null || centerX != mCenterX || centerY != mCenterY) {
+            mShader = new SweepGradient(centerX, centerY, mColors, mPositions);
+            mCenterX = centerX;
+            mCenterY = centerY;
+            created = true;
+        }
+        if (created || startingAngle != mAngle) {
+            mAngle = startingAngle;
+            mMatrix.setRotate(startingAngle, centerX, centerY);
+            mShader.setLocalMatrix(mMatrix);
+        }
+        return created;
+    }
+
+    SweepGradient getShader() {
+        return mShader;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.guilhe.circularprogressview;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free progress counter meant to be fed from any thread.
+ * <p>
+ * Producers only update atomics, they never block nor post messages to the main thread.
+ * A {@link CircularProgressView} bound through {@link CircularProgressView#setProgressSource(ProgressSource)}
+ * samples it once per frame, so any number of updates costs at most one redraw per vsync.
+ * Values are longs so multi-GB transfers keep their precision.
+ */
+@SuppressWarnings("unused")
+public final class ProgressSource {
+
+    private final AtomicLong mCurrent = new AtomicLong();
+    private final AtomicLong mTotal = new AtomicLong();
+
+    /**
+     * @param total value that represents 100%
+     */
+    public ProgressSource(long total) {
+        mTotal.set(total);
+    }
+
+    public void set(long current) {
+        mCurrent.set(current);
+    }
+
+    public void add(long delta) {
+        mCurrent.addAndGet(delta);
+    }
+
+    public long getCurrent() {
+        return mCurrent.get();
+    }
+
+    public void setTotal(long total) {
+        mTotal.set(total);
+    }
+
+    public long getTotal() {
+        return mTotal.get();
+    }
+
+    /**
+     * @return current / total, clamped to [0, 1]. 0 if total isn't positive.
+     */
+    public double getFraction() {
+        return fraction(mCurrent.get(), mTotal.get());
+    }
+
+    static double fraction(long current, long total) {
+        if (total <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (double) current / total));
+    }
+}
@@ -0,0 +1,249 @@
+package com.github.guilhe.circularprogressview;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timing histograms of the hot paths of {@link CircularProgressView}, enabled per view through
+ * {@link CircularProgressView#setMetricsEnabled(boolean)}.
+ * <p>
+ * Every view with metrics enabled records into its own instance and into the process-wide {@link #getGlobal()} one.
+ * Recording is lock-free and allocation free, so it may happen from any thread. Values are read, or pushed to a
+ * {@link Sink} through {@link #exportTo(Sink)}, whenever the app decides to.
+ */
+@SuppressWarnings("unused")
+public final class RenderMetrics {
+
+    public static final String DRAWS = "draws";
+    public static final String MEASURES = "measures";
+    public static final String INVALIDATES = "invalidates";
+    public static final String ANIMATION_STARTS = "animationStarts";
+    public static final String ANIMATION_CANCELS = "animationCancels";
+    public static final String ANIMATION_FRAMES = "animationFrames";
+    public static final String DRAW_NANOS = "drawNanos";
+    public static final String MEASURE_NANOS = "measureNanos";
+    public static final String CALLBACK_NANOS = "callbackNanos";
+
+    private static final RenderMetrics sGlobal = new RenderMetrics(null);
+
+    /**
+     * Receives every counter and histogram of a {@link RenderMetrics}, see {@link #exportTo(Sink)}.
+     */
+    public interface Sink {
+        void onCounter(String name, long value);
+
+        void onHistogram(String name, Histogram histogram);
+    }
+
+    /**
+     * Lock-free histogram of nanosecond durations in power of 2 buckets: bucket i counts values in [2^(i-1), 2^i).
+     */
+    public static final class Histogram {
+
+        public static final int BUCKET_COUNT = 64;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            mBuckets.incrementAndGet(Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+            mCount.incrementAndGet();
+            mSum.addAndGet(nanos);
+            long max = mMax.get();
+            while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getSum() {
+            return mSum.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public long getBucketCount(int bucket) {
+            return mBuckets.get(bucket);
+        }
+
+        /**
+         * @param percentile from 0 to 1
+         * @return upper bound, in nanos, of the bucket holding that percentile, 0 when empty
+         */
+        public long getPercentile(float percentile) {
+            long count = mCount.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return i == 0 ? 0 : i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return mMax.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+    }
+
+    private final RenderMetrics mParent;
+    private final AtomicLong mInvalidates = new AtomicLong();
+    private final AtomicLong mAnimationStarts = new AtomicLong();
+    private final AtomicLong mAnimationCancels = new AtomicLong();
+    private final AtomicLong mAnimationFrames = new AtomicLong();
+    private final Histogram mDrawNanos = new Histogram();
+    private final Histogram mMeasureNanos = new Histogram();
+    private final Histogram mCallbackNanos = new Histogram();
+
+    /**
+     * @param parent also receives every record, null for none
+     */
+    RenderMetrics(RenderMetrics parent) {
+        mParent = parent;
+    }
+
+    /**
+     * @return a new instance recording into {@link #getGlobal()} too
+     */
+    static RenderMetrics create() {
+        return new RenderMetrics(sGlobal);
+    }
+
+    /**
+     * @return aggregate of every view that has, or had, metrics enabled
+     */
+    public static RenderMetrics getGlobal() {
+        return sGlobal;
+    }
+
+    void recordDraw(long nanos) {
+        mDrawNanos.record(nanos);
+        if (mParent != null) {
+            mParent.recordDraw(nanos);
+        }
+    }
+
+    void recordMeasure(long nanos) {
+        mMeasureNanos.record(nanos);
+        if (mParent != null) {
+            mParent.recordMeasure(nanos);
+        }
+    }
+
+    void recordCallback(long nanos) {
+        mCallbackNanos.record(nanos);
+        if (mParent != null) {
+            mParent.recordCallback(nanos);
+        }
+    }
+
+    void recordInvalidate() {
+        mInvalidates.incrementAndGet();
+        if (mParent != null) {
+            mParent.recordInvalidate();
+        }
+    }
+
+    void recordAnimationStart() {
+        mAnimationStarts.incrementAndGet();
+        if (mParent != null) {
+            mParent.recordAnimationStart();
+        }
+    }
+
+    void recordAnimationCancel() {
+        mAnimationCancels.incrementAndGet();
+        if (mParent != null) {
+            mParent.recordAnimationCancel();
+        }
+    }
+
+    void recordAnimationFrame() {
+        mAnimationFrames.incrementAndGet();
+        if (mParent != null) {
+            mParent.recordAnimationFrame();
+        }
+    }
+
+    public long getDrawCount() {
+        return mDrawNanos.getCount();
+    }
+
+    public long getMeasureCount() {
+        return mMeasureNanos.getCount();
+    }
+
+    public long getInvalidateCount() {
+        return mInvalidates.get();
+    }
+
+    public long getAnimationStartCount() {
+        return mAnimationStarts.get();
+    }
+
+    public long getAnimationCancelCount() {
+        return mAnimationCancels.get();
+    }
+
+    public long getAnimationFrameCount() {
+        return mAnimationFrames.get();
+    }
+
+    public Histogram getDrawNanos() {
+        return mDrawNanos;
+    }
+
+    public Histogram getMeasureNanos() {
+        return mMeasureNanos;
+    }
+
+    /**
+     * @return time spent in progress callbacks and listeners dispatched from the main thread
+     */
+    public Histogram getCallbackNanos() {
+        return mCallbackNanos;
+    }
+
+    public void exportTo(Sink sink) {
+        sink.onCounter(DRAWS, getDrawCount());
+        sink.onCounter(MEASURES, getMeasureCount());
+        sink.onCounter(INVALIDATES, getInvalidateCount());
+        sink.onCounter(ANIMATION_STARTS, getAnimationStartCount());
+        sink.onCounter(ANIMATION_CANCELS, getAnimationCancelCount());
+        sink.onCounter(ANIMATION_FRAMES, getAnimationFrameCount());
+        sink.onHistogram(DRAW_NANOS, mDrawNanos);
+        sink.onHistogram(MEASURE_NANOS, mMeasureNanos);
+        sink.onHistogram(CALLBACK_NANOS, mCallbackNanos);
+    }
+
+    /**
+     * Not atomic with concurrent records, some of them may survive the reset.
+     */
+    public void reset() {
+        mInvalidates.set(0);
+        mAnimationStarts.set(0);
+        mAnimationCancels.set(0);
+        mAnimationFrames.set(0);
+        mDrawNanos.reset();
+        mMeasureNanos.reset();
+        mCallbackNanos.reset();
+    }
+}
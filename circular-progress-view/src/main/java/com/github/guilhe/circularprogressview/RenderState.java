@@ -0,0 +1,172 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * Everything {@link CircularProgressView#onDraw(android.graphics.Canvas)} needs, published with a sequence lock.
+ * <p>
+ * Writers may run on any thread, they are serialized between themselves and bump {@link #mVersion} to an odd value
+ * while a write is in flight. The reader never locks: {@link #read(Snapshot)} copies all fields and retries if a write
+ * overlapped the copy, so it always observes a consistent state without allocating.
+ * Colors and thickness also bump a paint version, which progress changes leave alone, so paints are only touched
+ * when they actually changed.
+ */
+final class RenderState {
+
+    static final class Snapshot {
+        int version = -1;
+        int paintVersion = -1;
+        float progress;
+        int max;
+        int startingAngle;
+        float thickness;
+        int progressColor;
+        int backgroundColor;
+        boolean shadowEnabled;
+        boolean thumbEnabled;
+    }
+
+    private final Object mWriteLock = new Object();
+    private volatile int mVersion;
+    private volatile int mPaintVersion;
+
+    private volatile float mProgress;
+    private volatile int mMax;
+    private volatile int mStartingAngle;
+    private volatile float mThickness;
+    private volatile int mProgressColor;
+    private volatile int mBackgroundColor;
+    private volatile boolean mShadowEnabled;
+    private volatile boolean mThumbEnabled;
+
+    /**
+     * Copies a consistent state into out, retrying while a write is in progress.
+     */
+    void read(Snapshot out) {
+        int version;
+        do {
+            version = mVersion;
+            if ((version & 1) != 0) {
+                continue;
+            }
+            out.paintVersion = mPaintVersion;
+            out.progress = mProgress;
+            out.max = mMax;
+            out.startingAngle = mStartingAngle;
+            out.thickness = mThickness;
+            out.progressColor = mProgressColor;
+            out.backgroundColor = mBackgroundColor;
+            out.shadowEnabled = mShadowEnabled;
+            out.thumbEnabled = mThumbEnabled;
+        } while ((version & 1) != 0 || version != mVersion);
+        out.version = version;
+    }
+
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return version of the fields paints depend on (colors and thickness), it doesn't move with progress
+     */
+    int getPaintVersion() {
+        return mPaintVersion;
+    }
+
+    float getProgress() {
+        return mProgress;
+    }
+
+    void setProgress(float progress) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mProgress = progress;
+            mVersion++;
+        }
+    }
+
+    int getMax() {
+        return mMax;
+    }
+
+    void setMax(int max) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mMax = max;
+            mVersion++;
+        }
+    }
+
+    int getStartingAngle() {
+        return mStartingAngle;
+    }
+
+    void setStartingAngle(int startingAngle) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mStartingAngle = startingAngle;
+            mVersion++;
+        }
+    }
+
+    float getThickness() {
+        return mThickness;
+    }
+
+    void setThickness(float thickness) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mThickness = thickness;
+            mPaintVersion++;
+            mVersion++;
+        }
+    }
+
+    int getProgressColor() {
+        return mProgressColor;
+    }
+
+    int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    void setProgressColor(int color) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mProgressColor = color;
+            mPaintVersion++;
+            mVersion++;
+        }
+    }
+
+    void setBackgroundColor(int color) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mBackgroundColor = color;
+            mPaintVersion++;
+            mVersion++;
+        }
+    }
+
+    boolean isShadowEnabled() {
+        return mShadowEnabled;
+    }
+
+    void setShadowEnabled(boolean enabled) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mShadowEnabled = enabled;
+            mVersion++;
+        }
+    }
+
+    boolean isThumbEnabled() {
+        return mThumbEnabled;
+    }
+
+    void setThumbEnabled(boolean enabled) {
+        synchronized (mWriteLock) {
+            mVersion++;
+            mThumbEnabled = enabled;
+            mVersion++;
+        }
+    }
+}
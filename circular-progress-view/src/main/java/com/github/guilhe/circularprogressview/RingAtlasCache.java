@@ -0,0 +1,316 @@
+package com.github.guilhe.circularprogressview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of sprite atlases used by {@link CircularProgressView#setQuantizedSteps(int)}.
+ * <p>
+ * An atlas holds the whole ring, as drawn by {@link CircularProgressRenderer}, at each of the 0..steps progress
+ * values of one configuration, in a grid of cells. Each row of cells is a page, an {@link Bitmap.Config#ARGB_8888}
+ * bitmap allocated the first time one of its steps is shown, and cells are drawn lazily too. Atlases are shared by
+ * every view with the same configuration and only their allocated pages count towards {@link #MAX_SIZE_BYTES}.
+ * Atlases are evicted by LRU once it's exceeded, and an atlas that doesn't fit on its own drops its least recently
+ * used pages instead. Configurations whose single page wouldn't fit are refused and the caller keeps drawing vectors.
+ * The cache trims itself on {@link #onTrimMemory(int)}.
+ * Must be used from the main thread.
+ */
+@SuppressWarnings("unused")
+public final class RingAtlasCache implements ComponentCallbacks2 {
+
+    public static final int MAX_SIZE_BYTES = 8 * 1024 * 1024;
+
+    private static RingAtlasCache sInstance;
+
+    private final LruCache<Key, Atlas> mCache;
+    private final CircularProgressRenderer mRenderer;
+    private int mCellRenderCount;
+    private int mPageAllocationCount;
+    private int mRefusedCount;
+    private long mPageUseCount;
+
+    static final class Key {
+        final int size;
+        final float thickness;
+        final int progressColor;
+        final int backgroundColor;
+        final int startingAngle;
+        final boolean thumb;
+        final boolean shadow;
+        final int steps;
+        /**
+         * Compared by instance, renderers are stateless and usually shared.
+         */
+        final RingRenderer renderer;
+        /**
+         * Set on the caller's key once refused, so a view is only counted once.
+         */
+        boolean refused;
+
+        Key(int size, float thickness, int progressColor, int backgroundColor, int startingAngle, boolean thumb, boolean shadow, int steps,
+            RingRenderer renderer) {
+            this.size = size;
+            this.thickness = thickness;
+            this.progressColor = progressColor;
+            this.backgroundColor = backgroundColor;
+            this.startingAngle = startingAngle;
+            this.thumb = thumb;
+            this.shadow = shadow;
+            this.steps = steps;
+            this.renderer = renderer;
+        }
+
+        boolean matches(int size, float thickness, int progressColor, int backgroundColor, int startingAngle, boolean thumb, boolean shadow, int steps,
+                        RingRenderer renderer) {
+            return this.size == size && this.thickness == thickness && this.progressColor == progressColor
+                    && this.backgroundColor == backgroundColor && this.startingAngle == startingAngle && this.thumb == thumb
+                    && this.shadow == shadow && this.steps == steps && this.renderer == renderer;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return matches(key.size, key.thickness, key.progressColor, key.backgroundColor, key.startingAngle, key.thumb, key.shadow, key.steps,
+                    key.renderer);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = size;
+            result = 31 * result + Float.floatToIntBits(thickness);
+            result = 31 * result + progressColor;
+            result = 31 * result + backgroundColor;
+            result = 31 * result + startingAngle;
+            result = 31 * result + (thumb ? 1 : 0);
+            result = 31 * result + (shadow ? 1 : 0);
+            result = 31 * result + steps;
+            result = 31 * result + System.identityHashCode(renderer);
+            return result;
+        }
+    }
+
+    static final class Atlas {
+        private final Key mKey;
+        private final int mColumns;
+        private final int mPageBytes;
+        private final Bitmap[] mPages;
+        private final Canvas[] mCanvases;
+        private final long[] mPageUses;
+        private final boolean[] mDrawn;
+        private int mByteCount;
+
+        private Atlas(Key key) {
+            mKey = key;
+            mColumns = getColumns(key);
+            mPageBytes = getPageBytes(key);
+            int rows = (key.steps + mColumns) / mColumns;
+            mPages = new Bitmap[rows];
+            mCanvases = new Canvas[rows];
+            mPageUses = new long[rows];
+            mDrawn = new boolean[key.steps + 1];
+        }
+
+        /**
+         * @return bytes of the pages allocated so far
+         */
+        int getByteCount() {
+            return mByteCount;
+        }
+
+        private void dropPage(int row) {
+            mPages[row] = null;
+            mCanvases[row] = null;
+            mByteCount -= mPageBytes;
+            int end = Math.min(mDrawn.length, (row + 1) * mColumns);
+            for (int step = row * mColumns; step < end; step++) {
+                mDrawn[step] = false;
+            }
+        }
+
+        private int getLeastRecentlyUsedPage() {
+            int lru = -1;
+            for (int row = 0; row < mPages.length; row++) {
+                if (mPages[row] != null && (lru < 0 || mPageUses[row] < mPageUses[lru])) {
+                    lru = row;
+                }
+            }
+            return lru;
+        }
+
+        private static int getPageBytes(Key key) {
+            return 4 * getColumns(key) * key.size * key.size;
+        }
+
+        private static int getColumns(Key key) {
+            return (int) Math.ceil(Math.sqrt(key.steps + 1));
+        }
+    }
+
+    private RingAtlasCache(Context context) {
+        mCache = new LruCache<Key, Atlas>(MAX_SIZE_BYTES) {
+            @Override
+            protected int sizeOf(Key key, Atlas value) {
+                return value.getByteCount();
+            }
+        };
+        mRenderer = new CircularProgressRenderer(context);
+    }
+
+    /**
+     * @param context any context, only its application context is retained to receive trim memory events
+     */
+    public static synchronized RingAtlasCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new RingAtlasCache(context);
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param key the caller's key, flagged as {@link Key#refused} if its pages can't fit in the cache
+     * @return the atlas for this configuration, created on a miss, or null if refused
+     */
+    Atlas getAtlas(Key key) {
+        if (key.refused) {
+            return null;
+        }
+        Atlas atlas = mCache.get(key);
+        if (atlas == null) {
+            if ((long) Atlas.getColumns(key) * key.size * key.size * 4 > MAX_SIZE_BYTES) {
+                key.refused = true;
+                mRefusedCount++;
+                return null;
+            }
+            atlas = new Atlas(key);
+            mCache.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Allocates the step's page and draws its cell if they weren't yet.
+     *
+     * @param out bounds of the cell within the returned page
+     * @return the page holding the cell
+     */
+    Bitmap getCell(Atlas atlas, int step, Rect out) {
+        Key key = atlas.mKey;
+        int row = step / atlas.mColumns;
+        int left = step % atlas.mColumns * key.size;
+        out.set(left, 0, left + key.size, key.size);
+        atlas.mPageUses[row] = ++mPageUseCount;
+        if (atlas.mPages[row] == null) {
+            allocatePage(atlas, row);
+        }
+        Bitmap page = atlas.mPages[row];
+        if (atlas.mDrawn[step]) {
+            return page;
+        }
+        mRenderer.setMax(key.steps);
+        mRenderer.setStartingAngle(key.startingAngle);
+        mRenderer.setProgressStrokeThickness(key.thickness);
+        mRenderer.setProgressColor(key.progressColor);
+        mRenderer.setBackgroundColor(key.backgroundColor);
+        mRenderer.setShadowEnabled(key.shadow);
+        mRenderer.setProgressThumbEnabled(key.thumb);
+        mRenderer.setRingRenderer(key.renderer);
+        Canvas canvas = atlas.mCanvases[row];
+        int count = canvas.save();
+        canvas.clipRect(out);
+        canvas.translate(left, 0);
+        mRenderer.render(canvas, key.size, step);
+        canvas.restoreToCount(count);
+        atlas.mDrawn[step] = true;
+        mCellRenderCount++;
+        return page;
+    }
+
+    private void allocatePage(Atlas atlas, int row) {
+        //LruCache only measures an entry when it's added or removed
+        mCache.remove(atlas.mKey);
+        while (atlas.mByteCount + atlas.mPageBytes > MAX_SIZE_BYTES) {
+            atlas.dropPage(atlas.getLeastRecentlyUsedPage());
+        }
+        Key key = atlas.mKey;
+        atlas.mPages[row] = Bitmap.createBitmap(atlas.mColumns * key.size, key.size, Bitmap.Config.ARGB_8888);
+        atlas.mCanvases[row] = new Canvas(atlas.mPages[row]);
+        atlas.mByteCount += atlas.mPageBytes;
+        mPageAllocationCount++;
+        mCache.put(key, atlas);
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return cells drawn so far, across every atlas
+     */
+    public int getCellRenderCount() {
+        return mCellRenderCount;
+    }
+
+    /**
+     * @return pages allocated so far, including those allocated again after an eviction
+     */
+    public int getPageAllocationCount() {
+        return mPageAllocationCount;
+    }
+
+    /**
+     * @return views refused because a single page of their atlas would exceed {@link #MAX_SIZE_BYTES}
+     */
+    public int getRefusedCount() {
+        return mRefusedCount;
+    }
+
+    /**
+     * @return bytes currently held
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            mCache.evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        //not in use
+    }
+}
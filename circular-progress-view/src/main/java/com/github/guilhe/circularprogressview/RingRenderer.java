@@ -0,0 +1,34 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * Strategy recording how a ring is drawn into a {@link DrawCommandBuffer}, see
+ * {@link CircularProgressView#setRingRenderer(RingRenderer)}.
+ * <p>
+ * {@link #record} is only called when the ring's geometry or appearance changed, the recorded commands are replayed
+ * on every other frame. Implementations must be stateless, one instance may be shared by many views.
+ */
+public interface RingRenderer {
+
+    /**
+     * Paint slots commands can refer to: the background ring, progress (and thumb) and shadow paints, all stroked with
+     * the ring's thickness.
+     */
+    int PAINT_BACKGROUND = 0;
+    int PAINT_PROGRESS = 1;
+    int PAINT_SHADOW = 2;
+
+    /**
+     * @param cx            center x of the ring
+     * @param cy            center y of the ring
+     * @param radius        radius of the stroke's center line
+     * @param thickness     stroke width
+     * @param shadowOffset  vertical offset of the shadow
+     * @param startingAngle where progress starts, in degrees
+     * @param sweepAngle    degrees covered by progress
+     * @param shadow        true to draw the shadow
+     * @param thumb         true to draw the progress thumb
+     * @param out           already reset, to record into
+     */
+    void record(float cx, float cy, float radius, float thickness, float shadowOffset, float startingAngle, float sweepAngle,
+                boolean shadow, boolean thumb, DrawCommandBuffer out);
+}
@@ -0,0 +1,28 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * A cheaper {@link RingRenderer} where the thumb is approximated by round caps: arc and thumb are a single round capped
+ * arc, for up to 3 draw calls. The caps are as wide as the stroke, so they are smaller than the standard thumb, and
+ * progress also gets a rounded start. Without thumb it draws exactly like {@link StandardRingRenderer}.
+ */
+@SuppressWarnings("unused")
+public final class RoundCapRingRenderer implements RingRenderer {
+
+    @Override
+    public void record(float cx, float cy, float radius, float thickness, float shadowOffset, float startingAngle, float sweepAngle,
+                       boolean shadow, boolean thumb, DrawCommandBuffer out) {
+        if (shadow) {
+            if (thumb) {
+                out.addRoundArc(PAINT_SHADOW, cx, cy + shadowOffset, radius, startingAngle, sweepAngle);
+            } else {
+                out.addArc(PAINT_SHADOW, cx, cy + shadowOffset, radius, startingAngle, sweepAngle);
+            }
+        }
+        out.addOval(PAINT_BACKGROUND, cx, cy, radius);
+        if (thumb) {
+            out.addRoundArc(PAINT_PROGRESS, cx, cy, radius, startingAngle, sweepAngle);
+        } else {
+            out.addArc(PAINT_PROGRESS, cx, cy, radius, startingAngle, sweepAngle);
+        }
+    }
+}
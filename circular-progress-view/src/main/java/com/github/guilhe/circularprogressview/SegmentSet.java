@@ -0,0 +1,263 @@
+package com.github.guilhe.circularprogressview;
+
+import android.animation.TimeInterpolator;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Consecutive (value, color) segments drawn along one ring, each one animated on its own.
+ * <p>
+ * Segments sharing a color are batched into a single {@link Path}, one drawPath per distinct color.
+ * Angles are only recomputed from the first segment whose value changed, since the following ones start where it ends,
+ * and only the paths of colors owning a changed segment are rebuilt.
+ * Must be used from the main thread.
+ */
+final class SegmentSet {
+
+    private int mCount;
+    private float[] mValues = new float[0];
+    private int[] mColorGroup = new int[0];
+    private float[] mStart = new float[0];
+    private float[] mSweep = new float[0];
+
+    private int[] mGroupColors = new int[0];
+    private Path[] mGroupPaths = new Path[0];
+    private boolean[] mGroupDirty = new boolean[0];
+    private int mGroupCount;
+
+    private float[] mAnimationFrom = new float[0];
+    private float[] mAnimationTo = new float[0];
+    private long[] mAnimationStartNanos = new long[0];
+    private long[] mAnimationElapsedNanos = new long[0];
+    private long[] mAnimationDurationNanos = new long[0];
+    private boolean[] mAnimating = new boolean[0];
+    private int mAnimatingCount;
+    private long mLastFrameNanos;
+
+    private int mFirstDirty;
+    private final RectF mRect = new RectF();
+    private float mStartingAngle = Float.NaN;
+    private int mMax;
+
+    /**
+     * Replaces every segment, cancelling their animations.
+     */
+    void set(float[] values, int[] colors) {
+        if (values.length != colors.length) {
+            throw new IllegalArgumentException("values and colors must have the same length");
+        }
+        mCount = values.length;
+        mValues = Arrays.copyOf(values, mCount);
+        mColorGroup = new int[mCount];
+        mStart = new float[mCount];
+        mSweep = new float[mCount];
+        mAnimationFrom = new float[mCount];
+        mAnimationTo = new float[mCount];
+        mAnimationStartNanos = new long[mCount];
+        mAnimationElapsedNanos = new long[mCount];
+        mAnimationDurationNanos = new long[mCount];
+        mAnimating = new boolean[mCount];
+        mAnimatingCount = 0;
+
+        mGroupColors = new int[mCount];
+        mGroupCount = 0;
+        for (int i = 0; i < mCount; i++) {
+            int group = 0;
+            while (group < mGroupCount && mGroupColors[group] != colors[i]) {
+                group++;
+            }
+            if (group == mGroupCount) {
+                mGroupColors[mGroupCount++] = colors[i];
+            }
+            mColorGroup[i] = group;
+        }
+        if (mGroupPaths.length < mGroupCount) {
+            Path[] paths = Arrays.copyOf(mGroupPaths, mGroupCount);
+            for (int i = mGroupPaths.length; i < mGroupCount; i++) {
+                paths[i] = new Path();
+            }
+            mGroupPaths = paths;
+        }
+        mGroupDirty = new boolean[mGroupCount];
+        //paths are reused from the previous segments
+        Arrays.fill(mGroupDirty, true);
+        mFirstDirty = 0;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    float getValue(int index) {
+        return mValues[index];
+    }
+
+    int getColor(int index) {
+        return mGroupColors[mColorGroup[index]];
+    }
+
+    void setValue(int index, float value) {
+        if (mAnimating[index]) {
+            mAnimating[index] = false;
+            mAnimatingCount--;
+        }
+        updateValue(index, value);
+    }
+
+    void animate(int index, float to, long durationNanos) {
+        if (!mAnimating[index]) {
+            mAnimating[index] = true;
+            mAnimatingCount++;
+        }
+        mAnimationFrom[index] = mValues[index];
+        mAnimationTo[index] = to;
+        mAnimationStartNanos[index] = -1;
+        mAnimationElapsedNanos[index] = 0;
+        mAnimationDurationNanos[index] = durationNanos;
+    }
+
+    boolean isAnimating() {
+        return mAnimatingCount > 0;
+    }
+
+    boolean isAnimating(int index) {
+        return mAnimating[index];
+    }
+
+    /**
+     * Freezes running animations in time, the next {@link #step(long, TimeInterpolator)} continues from there.
+     */
+    void pause() {
+        for (int i = 0; i < mCount; i++) {
+            if (mAnimating[i] && mAnimationStartNanos[i] >= 0) {
+                mAnimationElapsedNanos[i] = mLastFrameNanos - mAnimationStartNanos[i];
+                mAnimationStartNanos[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * Jumps every running animation to its target.
+     */
+    void end() {
+        for (int i = 0; i < mCount; i++) {
+            if (mAnimating[i]) {
+                setValue(i, mAnimationTo[i]);
+            }
+        }
+    }
+
+    /**
+     * @return true if any segment changed
+     */
+    boolean step(long frameTimeNanos, TimeInterpolator interpolator) {
+        mLastFrameNanos = frameTimeNanos;
+        boolean changed = false;
+        for (int i = 0; i < mCount && mAnimatingCount > 0; i++) {
+            if (!mAnimating[i]) {
+                continue;
+            }
+            if (mAnimationStartNanos[i] < 0) {
+                mAnimationStartNanos[i] = frameTimeNanos - mAnimationElapsedNanos[i];
+            }
+            long duration = mAnimationDurationNanos[i];
+            float fraction = duration > 0 ? Math.min(1f, (float) (frameTimeNanos - mAnimationStartNanos[i]) / duration) : 1f;
+            if (fraction >= 1) {
+                mAnimating[i] = false;
+                mAnimatingCount--;
+            }
+            updateValue(i, mAnimationFrom[i] + (mAnimationTo[i] - mAnimationFrom[i]) * interpolator.getInterpolation(fraction));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Brings angles and paths up to date, a change of any argument invalidates every segment.
+     *
+     * @param rect          oval the arcs are drawn on
+     * @param startingAngle where the first segment starts, in degrees
+     * @param max           total the values are relative to
+     */
+    void update(RectF rect, float startingAngle, int max) {
+        if (!rect.equals(mRect) || startingAngle != mStartingAngle || max != mMax) {
+            mRect.set(rect);
+            mStartingAngle = startingAngle;
+            mMax = max;
+            mFirstDirty = 0;
+            Arrays.fill(mGroupDirty, true);
+        }
+        if (mFirstDirty >= mCount) {
+            return;
+        }
+        float start = mFirstDirty == 0 ? startingAngle : mStart[mFirstDirty - 1] + mSweep[mFirstDirty - 1];
+        float end = startingAngle + 360;
+        for (int i = mFirstDirty; i < mCount; i++) {
+            float sweep = max > 0 ? 360f * Math.max(0, mValues[i]) / max : 0;
+            sweep = Math.max(0, Math.min(sweep, end - start));
+            if (sweep != mSweep[i] || start != mStart[i]) {
+                mStart[i] = start;
+                mSweep[i] = sweep;
+                mGroupDirty[mColorGroup[i]] = true;
+            }
+            start += sweep;
+        }
+        mFirstDirty = mCount;
+        for (int group = 0; group < mGroupCount; group++) {
+            if (mGroupDirty[group]) {
+                mGroupDirty[group] = false;
+                rebuildPath(group);
+            }
+        }
+    }
+
+    /**
+     * @return degrees covered by all segments together, valid after {@link #update(RectF, float, int)}
+     */
+    float getTotalSweep() {
+        return mCount == 0 ? 0 : mStart[mCount - 1] + mSweep[mCount - 1] - mStartingAngle;
+    }
+
+    /**
+     * @return color of the last segment with a visible sweep, or fallback when there's none
+     */
+    int getLastVisibleColor(int fallback) {
+        for (int i = mCount - 1; i >= 0; i--) {
+            if (mSweep[i] > 0) {
+                return mGroupColors[mColorGroup[i]];
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * @param paint stroke paint, only its color is changed
+     */
+    void draw(Canvas canvas, Paint paint) {
+        for (int group = 0; group < mGroupCount; group++) {
+            paint.setColor(mGroupColors[group]);
+            canvas.drawPath(mGroupPaths[group], paint);
+        }
+    }
+
+    private void updateValue(int index, float value) {
+        if (mValues[index] != value) {
+            mValues[index] = value;
+            mFirstDirty = Math.min(mFirstDirty, index);
+        }
+    }
+
+    private void rebuildPath(int group) {
+        Path path = mGroupPaths[group];
+        path.rewind();
+        for (int i = 0; i < mCount; i++) {
+            if (mColorGroup[i] == group && mSweep[i] > 0) {
+                path.addArc(mRect, mStart[i], mSweep[i]);
+            }
+        }
+    }
+}
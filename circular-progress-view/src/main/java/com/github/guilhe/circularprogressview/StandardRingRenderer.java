@@ -0,0 +1,27 @@
+package com.github.guilhe.circularprogressview;
+
+/**
+ * The default {@link RingRenderer}: shadow thumb and arc, background oval, progress arc and thumb, up to 5 draw calls.
+ */
+@SuppressWarnings("unused")
+public final class StandardRingRenderer implements RingRenderer {
+
+    @Override
+    public void record(float cx, float cy, float radius, float thickness, float shadowOffset, float startingAngle, float sweepAngle,
+                       boolean shadow, boolean thumb, DrawCommandBuffer out) {
+        float thumbX = ArcGeometry.cos(startingAngle + sweepAngle) * radius;
+        float thumbY = ArcGeometry.sin(startingAngle + sweepAngle) * radius;
+        float thumbRadius = thickness / 2;
+        if (shadow) {
+            if (thumb) {
+                out.addCircle(PAINT_SHADOW, cx + thumbX, cy + shadowOffset + thumbY, thumbRadius);
+            }
+            out.addArc(PAINT_SHADOW, cx, cy + shadowOffset, radius, startingAngle, sweepAngle);
+        }
+        out.addOval(PAINT_BACKGROUND, cx, cy, radius);
+        out.addArc(PAINT_PROGRESS, cx, cy, radius, startingAngle, sweepAngle);
+        if (thumb) {
+            out.addCircle(PAINT_PROGRESS, cx + thumbX, cy + thumbY, thumbRadius);
+        }
+    }
+}
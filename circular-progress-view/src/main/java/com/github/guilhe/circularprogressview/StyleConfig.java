@@ -0,0 +1,177 @@
+package com.github.guilhe.circularprogressview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import static com.github.guilhe.circularprogressview.CircularProgressView.*;
+
+/**
+ * Immutable result of resolving the CircularProgressView attributes, shared by every view inflated with the same
+ * theme, default style and attribute values.
+ * <p>
+ * Entries are held per {@link Resources.Theme} and dropped once the theme is garbage collected. Attribute sets are
+ * compared by the values of this view's own attributes only, so unrelated layout attributes don't defeat the cache.
+ * Changes applied later on to an already used theme, through {@link Resources.Theme#applyStyle(int, boolean)}, aren't
+ * seen by configs resolved before.
+ */
+final class StyleConfig {
+
+    private static final WeakHashMap<Resources.Theme, HashMap<Key, StyleConfig>> sConfigs = new WeakHashMap<>();
+    private static Dimensions sDimensions;
+    private static int sResolveCount;
+
+    final int max;
+    final boolean shadowEnabled;
+    final boolean thumbEnabled;
+    final int startingAngle;
+    final float progress;
+    final float thickness;
+    final int progressColor;
+    final int backgroundColor;
+
+    private StyleConfig(TypedArray typedArray, float defaultThickness) {
+        max = typedArray.getInt(R.styleable.CircularProgressView_max, DEFAULT_MAX);
+        shadowEnabled = typedArray.getBoolean(R.styleable.CircularProgressView_shadow, true);
+        thumbEnabled = typedArray.getBoolean(R.styleable.CircularProgressView_progressThumb, false);
+        startingAngle = typedArray.getInteger(R.styleable.CircularProgressView_startingAngle, DEFAULT_STARTING_ANGLE);
+        progress = typedArray.getFloat(R.styleable.CircularProgressView_progress, 0);
+        thickness = typedArray.getDimension(R.styleable.CircularProgressView_progressBarThickness, defaultThickness);
+        progressColor = typedArray.getInt(R.styleable.CircularProgressView_progressBarColor, DEFAULT_PROGRESS_COLOR);
+        backgroundColor = typedArray.getInt(R.styleable.CircularProgressView_backgroundColor, progressColor);
+    }
+
+    /**
+     * Same arguments as {@link Resources.Theme#obtainStyledAttributes(AttributeSet, int[], int, int)}, safe to call from
+     * background inflation threads.
+     */
+    static StyleConfig obtain(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        Resources.Theme theme = context.getTheme();
+        Key key = new Key(attrs, defStyleAttr, defStyleRes);
+        synchronized (sConfigs) {
+            HashMap<Key, StyleConfig> configs = sConfigs.get(theme);
+            StyleConfig config = configs != null ? configs.get(key) : null;
+            if (config != null) {
+                return config;
+            }
+        }
+        StyleConfig config;
+        TypedArray typedArray = theme.obtainStyledAttributes(attrs, R.styleable.CircularProgressView, defStyleAttr, defStyleRes);
+        try {
+            config = new StyleConfig(typedArray, getDimensions(context).strokeThickness);
+        } finally {
+            typedArray.recycle();
+        }
+        synchronized (sConfigs) {
+            HashMap<Key, StyleConfig> configs = sConfigs.get(theme);
+            if (configs == null) {
+                configs = new HashMap<>();
+                sConfigs.put(theme, configs);
+            }
+            configs.put(key, config);
+            sResolveCount++;
+        }
+        return config;
+    }
+
+    /**
+     * @return attribute sets resolved through the theme so far, every other {@link #obtain} was a cache hit
+     */
+    static int getResolveCount() {
+        synchronized (sConfigs) {
+            return sResolveCount;
+        }
+    }
+
+    /**
+     * @return dp based defaults in pixels for this context's density, recomputed only when the density changes
+     */
+    static Dimensions getDimensions(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        Dimensions dimensions = sDimensions;
+        if (dimensions == null || dimensions.density != metrics.density) {
+            dimensions = new Dimensions(context, metrics.density);
+            sDimensions = dimensions;
+        }
+        return dimensions;
+    }
+
+    static final class Dimensions {
+        final float density;
+        final float viewPadding;
+        final float shadowPadding;
+        final float strokeThickness;
+        final int maxWidth;
+        final float shadowBlur;
+
+        private Dimensions(Context context, float density) {
+            this.density = density;
+            viewPadding = convertDpToPx(context, DEFAULT_VIEW_PADDING_DP);
+            shadowPadding = convertDpToPx(context, DEFAULT_SHADOW_PADDING_DP);
+            strokeThickness = convertDpToPx(context, DEFAULT_STROKE_THICKNESS_DP);
+            maxWidth = convertDpToPx(context, DEFAULT_MAX_WIDTH_DP);
+            shadowBlur = convertDpToPx(context, DEFAULT_SHADOW_BLUR_DP);
+        }
+    }
+
+    private static final class Key {
+        private final int mDefStyleAttr;
+        private final int mDefStyleRes;
+        private final int mStyle;
+        private final String[] mValues;
+        private final int mHash;
+
+        Key(AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+            mDefStyleAttr = defStyleAttr;
+            mDefStyleRes = defStyleRes;
+            int[] names = R.styleable.CircularProgressView;
+            //values in styleable order, null when not set
+            mValues = new String[names.length];
+            if (attrs != null) {
+                mStyle = attrs.getStyleAttribute();
+                for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+                    int index = indexOf(names, attrs.getAttributeNameResource(i));
+                    if (index >= 0) {
+                        mValues[index] = attrs.getAttributeValue(i);
+                    }
+                }
+            } else {
+                mStyle = 0;
+            }
+            mHash = 31 * (31 * (31 * defStyleAttr + defStyleRes) + mStyle) + Arrays.hashCode(mValues);
+        }
+
+        private static int indexOf(int[] array, int value) {
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mHash == key.mHash && mDefStyleAttr == key.mDefStyleAttr && mDefStyleRes == key.mDefStyleRes
+                    && mStyle == key.mStyle && Arrays.equals(mValues, key.mValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
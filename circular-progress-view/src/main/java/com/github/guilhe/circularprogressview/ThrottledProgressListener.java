@@ -0,0 +1,125 @@
+package com.github.guilhe.circularprogressview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps a {@link CircularProgressView.OnProgressChangeAnimationCallback} so it's called at most once per interval and
+ * only for changes bigger than a delta, either on the main thread or on a caller supplied {@link Executor}.
+ * <p>
+ * Updates are coalesced: whatever is pending when a delivery runs reports only the latest value.
+ * The finished event always flushes the latest value first. Nothing is allocated per update.
+ * An executor is expected to run tasks serially to keep events in order.
+ */
+final class ThrottledProgressListener {
+
+    private final CircularProgressView.OnProgressChangeAnimationCallback mCallback;
+    private final long mMinIntervalMillis;
+    private final float mMinDelta;
+    private final Executor mExecutor;
+    private final Handler mHandler;
+
+    private final AtomicBoolean mProgressScheduled = new AtomicBoolean();
+    private volatile float mLatest;
+    private volatile float mFinished;
+    private boolean mDelayedPending;
+    private long mLastDeliveryMillis = Long.MIN_VALUE / 2;
+    private float mLastDelivered = Float.NaN;
+
+    private final Runnable mDeliverProgress = new Runnable() {
+        @Override
+        public void run() {
+            mProgressScheduled.set(false);
+            mCallback.onProgressChanged(mLatest);
+        }
+    };
+
+    private final Runnable mDelayedProgress = new Runnable() {
+        @Override
+        public void run() {
+            mDelayedPending = false;
+            mLastDeliveryMillis = SystemClock.uptimeMillis();
+            mLastDelivered = mLatest;
+            deliver(mDeliverProgress);
+        }
+    };
+
+    private final Runnable mDeliverFinished = new Runnable() {
+        @Override
+        public void run() {
+            mCallback.onAnimationFinished(mFinished);
+        }
+    };
+
+    /**
+     * @param executor null to deliver on the main thread
+     */
+    ThrottledProgressListener(CircularProgressView.OnProgressChangeAnimationCallback callback, long minIntervalMillis, float minDelta, Executor executor) {
+        mCallback = callback;
+        mMinIntervalMillis = minIntervalMillis;
+        mMinDelta = minDelta;
+        mExecutor = executor;
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    CircularProgressView.OnProgressChangeAnimationCallback getCallback() {
+        return mCallback;
+    }
+
+    /**
+     * Must be called from the main thread.
+     */
+    void onProgressChanged(float progress) {
+        mLatest = progress;
+        if (Math.abs(progress - mLastDelivered) < mMinDelta || mDelayedPending) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long wait = mLastDeliveryMillis + mMinIntervalMillis - now;
+        if (wait > 0) {
+            mDelayedPending = true;
+            mHandler.postDelayed(mDelayedProgress, wait);
+        } else {
+            mLastDeliveryMillis = now;
+            mLastDelivered = progress;
+            deliver(mDeliverProgress);
+        }
+    }
+
+    /**
+     * Must be called from the main thread.
+     */
+    void onAnimationFinished(float progress) {
+        cancel();
+        mLatest = progress;
+        mFinished = progress;
+        if (progress != mLastDelivered) {
+            mLastDeliveryMillis = SystemClock.uptimeMillis();
+            mLastDelivered = progress;
+            deliver(mDeliverProgress);
+        }
+        if (mExecutor == null) {
+            mDeliverFinished.run();
+        } else {
+            mExecutor.execute(mDeliverFinished);
+        }
+    }
+
+    void cancel() {
+        mDelayedPending = false;
+        mHandler.removeCallbacks(mDelayedProgress);
+    }
+
+    private void deliver(Runnable runnable) {
+        if (mExecutor == null) {
+            runnable.run();
+        } else if (runnable != mDeliverProgress || mProgressScheduled.compareAndSet(false, true)) {
+            //a progress task still waiting in the executor will pick up mLatest, no need for another one
+            mExecutor.execute(runnable);
+        }
+    }
+}
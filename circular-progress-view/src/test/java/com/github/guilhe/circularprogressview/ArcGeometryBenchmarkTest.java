@@ -0,0 +1,68 @@
+package com.github.guilhe.circularprogressview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plain JVM benchmarks of the per-frame arc math, gated by {@link PerfHarness}.
+ */
+public class ArcGeometryBenchmarkTest {
+
+    private static final int OPS = 200000;
+
+    @Test
+    public void frameUpdate() {
+        final ArcGeometry geometry = new ArcGeometry(30, 15);
+        geometry.setMax(100);
+        geometry.setStartingAngle(270);
+        geometry.setThickness(30);
+        geometry.setSize(300);
+        PerfHarness.run("arcGeometry.frameUpdate", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                geometry.setProgress(i % 1000 / 10f);
+                return geometry.getSweepAngle() + geometry.getThumbX() + geometry.getThumbY();
+            }
+        });
+    }
+
+    @Test
+    public void unchangedFrame() {
+        final ArcGeometry geometry = new ArcGeometry(30, 15);
+        geometry.setMax(100);
+        geometry.setProgress(42);
+        geometry.setSize(300);
+        PerfHarness.run("arcGeometry.unchangedFrame", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                geometry.setProgress(42);
+                return geometry.getSweepAngle() + geometry.getThumbX() + geometry.getThumbY();
+            }
+        });
+    }
+
+    @Test
+    public void sweepBounds() {
+        final float[] bounds = new float[4];
+        PerfHarness.run("arcGeometry.sweepBounds", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                ArcGeometry.getSweepBounds(150, 150, 100, 270, i % 360, i % 360 + 7.5f, 16, bounds);
+                return bounds[0] + bounds[3];
+            }
+        });
+    }
+
+    @Test
+    public void trigStaysWithinBound() {
+        float maxError = 0;
+        for (int i = -7200; i <= 7200; i++) {
+            float degrees = i / 7.3f;
+            double radians = Math.toRadians(degrees);
+            maxError = Math.max(maxError, (float) Math.abs(ArcGeometry.sin(degrees) - Math.sin(radians)));
+            maxError = Math.max(maxError, (float) Math.abs(ArcGeometry.cos(degrees) - Math.cos(radians)));
+        }
+        assertTrue("max error " + maxError, maxError < ArcGeometry.TRIG_MAX_ERROR);
+    }
+}
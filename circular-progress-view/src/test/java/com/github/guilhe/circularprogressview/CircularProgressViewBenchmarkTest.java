@@ -0,0 +1,190 @@
+package com.github.guilhe.circularprogressview;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Shader;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Robolectric benchmarks of the view's hot paths, gated by {@link PerfHarness}.
+ * Draws go to a {@link CountingCanvas}, so they measure the view's own work per frame.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class CircularProgressViewBenchmarkTest {
+
+    private static final int SIZE = 300;
+    private static final int OPS = 20000;
+
+    private Activity mActivity;
+    private CircularProgressView mView;
+    private CountingCanvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mView = newView(SIZE);
+        mCanvas = new CountingCanvas();
+    }
+
+    private CircularProgressView newView(int size) {
+        CircularProgressView view = new CircularProgressView(mActivity);
+        mActivity.setContentView(view, new ViewGroup.LayoutParams(size, size));
+        int spec = View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        view.layout(0, 0, size, size);
+        return view;
+    }
+
+    @Test
+    public void drawUnchanged() {
+        mView.setProgress(42);
+        PerfHarness.run("view.onDraw.unchanged", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                mView.onDraw(mCanvas);
+                return mCanvas.drawCount;
+            }
+        });
+    }
+
+    @Test
+    public void drawProgressFrame() {
+        PerfHarness.run("view.onDraw.progress", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                mView.setProgress(i % 1000 / 10f);
+                mView.onDraw(mCanvas);
+                return mCanvas.drawCount;
+            }
+        });
+    }
+
+    @Test
+    public void gradientFramesReuseTheShader() {
+        PerfHarness.Op frame = new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                //a turning start angle rotates the cached shader instead of building a new one
+                mView.setStartingAngle(i % 360);
+                mView.setProgress(i % 1000 / 10f);
+                mView.onDraw(mCanvas);
+                return mCanvas.drawCount;
+            }
+        };
+        PerfHarness.run("view.onDraw.rotating.solid", OPS, frame);
+        mView.setProgressGradient(new int[]{Color.RED, Color.GREEN, Color.BLUE}, null);
+        frame.run(0);
+        Shader shader = mCanvas.lastArcPaint.getShader();
+        assertNotNull(shader);
+        for (int i = 1; i < 720; i++) {
+            frame.run(i);
+            assertSame(shader, mCanvas.lastArcPaint.getShader());
+        }
+        PerfHarness.run("view.onDraw.rotating.gradient", OPS, frame);
+        assertSame(shader, mCanvas.lastArcPaint.getShader());
+    }
+
+    @Test
+    public void atlasAgainstVectors() {
+        //48dp at xhdpi, the atlas of whole percents fits in the cache
+        mView = newView(96);
+        PerfHarness.Op frame = new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                mView.setProgress(i % 101);
+                mView.onDraw(mCanvas);
+                return mCanvas.drawCount;
+            }
+        };
+        PerfHarness.Result vector = PerfHarness.run("view.onDraw.vector", OPS, frame);
+        int vectorDraws = countDraws();
+        RingAtlasCache.getInstance(mActivity).clear();
+        mView.setQuantizedSteps(100);
+        PerfHarness.Result atlas = PerfHarness.run("view.onDraw.atlas", OPS, frame);
+        assertEquals(1, countDraws());
+        assertTrue(vectorDraws > 1);
+        assertTrue(atlas.bytesPerOp + " B/op atlas vs " + vector.bytesPerOp + " B/op vector",
+                atlas.bytesPerOp <= vector.bytesPerOp + PerfHarness.ALLOCATION_SLACK_BYTES);
+    }
+
+    private int countDraws() {
+        mCanvas.drawCount = 0;
+        mView.setProgress(42);
+        mView.onDraw(mCanvas);
+        return mCanvas.drawCount;
+    }
+
+    @Test
+    public void measure() {
+        final int exactly = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        final int atMost = View.MeasureSpec.makeMeasureSpec(SIZE * 2, View.MeasureSpec.AT_MOST);
+        //alternating specs miss the measure cache on every call
+        PerfHarness.run("view.onMeasure", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                int spec = i % 2 == 0 ? exactly : atMost;
+                mView.onMeasure(spec, spec);
+                return mView.getMeasuredWidth();
+            }
+        });
+    }
+
+    @Test
+    public void setProgress() {
+        PerfHarness.run("view.setProgress", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                mView.setProgress(i % 1000 / 10f);
+                return mView.getProgress();
+            }
+        });
+    }
+
+    @Test
+    public void setProgressAnimated() {
+        PerfHarness.run("view.setProgress.animated", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                mView.setProgress(i % 1000 / 10f, true);
+                return mView.getProgress();
+            }
+        });
+    }
+
+    @Test
+    public void animatorSetup() {
+        final ProgressAnimator animator = new ProgressAnimator(new ProgressAnimator.Listener() {
+            @Override
+            public void onAnimationUpdate(float value) {
+                //not in use
+            }
+
+            @Override
+            public void onAnimationEnd() {
+                //not in use
+            }
+        });
+        PerfHarness.run("progressAnimator.start", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                animator.start(0, i % 100, 1000, CircularProgressView.DEFAULT_INTERPOLATOR);
+                animator.reset();
+                return animator.getTarget();
+            }
+        });
+    }
+}
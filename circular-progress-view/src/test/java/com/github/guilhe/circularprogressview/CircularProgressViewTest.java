@@ -0,0 +1,157 @@
+package com.github.guilhe.circularprogressview;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Behaviour of the view that its benchmarks don't cover: invalidation, threading and the fallbacks between modes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class CircularProgressViewTest {
+
+    private static final int SIZE = 300;
+
+    private Activity mActivity;
+    private CircularProgressView mView;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mView = new CircularProgressView(mActivity);
+        mActivity.setContentView(mView, new ViewGroup.LayoutParams(SIZE, SIZE));
+        layout();
+        mView.setMetricsEnabled(true);
+    }
+
+    private void layout() {
+        int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        mView.measure(spec, spec);
+        mView.layout(0, 0, SIZE, SIZE);
+    }
+
+    @Test
+    public void invalidThicknessFallsBackToLastOneSet() {
+        mView.setProgressStrokeThickness(40);
+        assertEquals(40, mView.getProgressStrokeThickness(), 0);
+        //too thick for the view, restored by the layout pass it requests
+        mView.setProgressStrokeThickness(SIZE);
+        layout();
+        assertEquals(40, mView.getProgressStrokeThickness(), 0);
+    }
+
+    @Test
+    public void tickerDrivenSubThresholdFramesAreSuppressed() {
+        //frames are stepped by hand below
+        ShadowLooper.pauseMainLooper();
+        AnimationTicker ticker = AnimationTicker.getInstance();
+        long frameNanos = 16666667;
+        int frame = 0;
+
+        //a suppressed change is drawn once the value rested for a whole frame
+        long invalidates = mView.getMetrics().getInvalidateCount();
+        mView.setProgress(0.001f);
+        ticker.doFrame(++frame * frameNanos);
+        assertEquals(invalidates, mView.getMetrics().getInvalidateCount());
+        ticker.doFrame(++frame * frameNanos);
+        assertEquals(invalidates + 1, mView.getMetrics().getInvalidateCount());
+
+        //a slow animation moves the arc by a fraction of a pixel per frame, the flush armed within a tick must not
+        //draw it in that same tick
+        invalidates = mView.getMetrics().getInvalidateCount();
+        long suppressed = mView.getSuppressedFrameCount();
+        mView.setProgress(2, true, 20000);
+        int frames = 120;
+        for (int i = 0; i < frames; i++) {
+            ticker.doFrame(++frame * frameNanos);
+        }
+        assertTrue(mView.getProgress() > 0.001f);
+        long issued = mView.getMetrics().getInvalidateCount() - invalidates;
+        assertTrue(issued + " invalidates in " + frames + " frames", issued < frames / 4);
+        assertTrue(mView.getSuppressedFrameCount() - suppressed > frames / 2);
+    }
+
+    @Test
+    public void animatingParentPromotesLayer() {
+        mView.setAutoHardwareLayerEnabled(true);
+        ShadowLooper.runUiThreadTasks();
+        assertFalse(mView.isHardwareLayerPromoted());
+
+        View parent = (View) mView.getParent();
+        parent.setAlpha(0.5f);
+        ReflectionHelpers.callInstanceMethod(mView.getViewTreeObserver(), "dispatchOnPreDraw");
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(mView.isHardwareLayerPromoted());
+
+        //demoted once the parent rested for a couple of frames
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+        assertFalse(mView.isHardwareLayerPromoted());
+    }
+
+    @Test
+    public void refusedAtlasIsRetriedAfterShrinking() {
+        int big = 1000;
+        mView.measure(View.MeasureSpec.makeMeasureSpec(big, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(big, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, big, big);
+        mView.setQuantizedSteps(100);
+        mView.setProgress(42);
+        CountingCanvas canvas = new CountingCanvas();
+        //a row of 1000px cells doesn't fit in the cache, vectors are drawn instead
+        mView.onDraw(canvas);
+        assertTrue(canvas.drawCount > 1);
+
+        layout();
+        canvas.drawCount = 0;
+        mView.onDraw(canvas);
+        assertEquals(1, canvas.drawCount);
+    }
+
+    @Test
+    public void workerProgressPostsOneInvalidate() throws InterruptedException {
+        long invalidates = mView.getMetrics().getInvalidateCount();
+        ShadowLooper.pauseMainLooper();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 1000; i++) {
+                    mView.setProgress(i / 10f);
+                }
+            }
+        });
+        worker.start();
+        worker.join();
+        ShadowLooper.unPauseMainLooper();
+        assertEquals(invalidates + 1, mView.getMetrics().getInvalidateCount());
+        assertEquals(99.9f, mView.getProgress(), 0);
+
+        //the next burst posts again
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mView.setProgress(10);
+            }
+        });
+        ShadowLooper.pauseMainLooper();
+        worker.start();
+        worker.join();
+        ShadowLooper.unPauseMainLooper();
+        assertEquals(invalidates + 2, mView.getMetrics().getInvalidateCount());
+    }
+}
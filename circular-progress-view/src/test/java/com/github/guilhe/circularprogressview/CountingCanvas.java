@@ -0,0 +1,52 @@
+package com.github.guilhe.circularprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Canvas that only counts draw calls, so benchmarks measure the view's own work and not rasterization, or the
+ * history Robolectric's canvas shadow would keep.
+ */
+class CountingCanvas extends Canvas {
+
+    int drawCount;
+    /**
+     * Paint of the last arc, whose shader tells which one a frame used.
+     */
+    Paint lastArcPaint;
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        drawCount++;
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        drawCount++;
+        lastArcPaint = paint;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        drawCount++;
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        drawCount++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        drawCount++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        drawCount++;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.guilhe.circularprogressview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Commands recorded by the bundled {@link RingRenderer}s and their painted area, on the plain JVM.
+ */
+public class DrawCommandBufferTest {
+
+    private static final float CX = 150;
+    private static final float CY = 150;
+    private static final float RADIUS = 100;
+    private static final float THICKNESS = 20;
+    private static final float DELTA = 1e-3f;
+
+    private final DrawCommandBuffer mBuffer = new DrawCommandBuffer();
+
+    private DrawCommandBuffer record(RingRenderer renderer, boolean shadow, boolean thumb) {
+        mBuffer.reset();
+        renderer.record(CX, CY, RADIUS, THICKNESS, 6, 270, 90, shadow, thumb, mBuffer);
+        return mBuffer;
+    }
+
+    @Test
+    public void standardRecordsFiveWithShadowAndThumb() {
+        DrawCommandBuffer buffer = record(new StandardRingRenderer(), true, true);
+        assertEquals(5, buffer.getCommandCount());
+        assertEquals(DrawCommandBuffer.OP_CIRCLE, buffer.getOp(0));
+        assertEquals(RingRenderer.PAINT_SHADOW, buffer.getPaint(0));
+        assertEquals(DrawCommandBuffer.OP_ARC, buffer.getOp(1));
+        assertEquals(RingRenderer.PAINT_SHADOW, buffer.getPaint(1));
+        assertEquals(DrawCommandBuffer.OP_OVAL, buffer.getOp(2));
+        assertEquals(RingRenderer.PAINT_BACKGROUND, buffer.getPaint(2));
+        assertEquals(DrawCommandBuffer.OP_ARC, buffer.getOp(3));
+        assertEquals(RingRenderer.PAINT_PROGRESS, buffer.getPaint(3));
+        assertEquals(DrawCommandBuffer.OP_CIRCLE, buffer.getOp(4));
+        //thumb at the end of a quarter turn from the top
+        assertEquals(CX + RADIUS, buffer.getOperand(4, 0), DELTA);
+        assertEquals(CY, buffer.getOperand(4, 1), DELTA);
+        assertEquals(THICKNESS / 2, buffer.getOperand(4, 2), DELTA);
+        assertEquals(CY + 6, buffer.getOperand(1, 1), DELTA);
+    }
+
+    @Test
+    public void standardRecordsThreeWithoutShadow() {
+        DrawCommandBuffer buffer = record(new StandardRingRenderer(), false, true);
+        assertEquals(3, buffer.getCommandCount());
+        assertEquals(1, buffer.getOpCount(DrawCommandBuffer.OP_CIRCLE));
+        assertEquals(2, record(new StandardRingRenderer(), false, false).getCommandCount());
+    }
+
+    @Test
+    public void roundCapRecordsAtMostThree() {
+        RingRenderer renderer = new RoundCapRingRenderer();
+        for (int i = 0; i < 4; i++) {
+            DrawCommandBuffer buffer = record(renderer, i / 2 == 1, i % 2 == 1);
+            assertTrue(buffer.getCommandCount() <= 3);
+            assertEquals(0, buffer.getOpCount(DrawCommandBuffer.OP_CIRCLE));
+        }
+        DrawCommandBuffer buffer = record(renderer, true, true);
+        assertEquals(3, buffer.getCommandCount());
+        assertEquals(2, buffer.getOpCount(DrawCommandBuffer.OP_ROUND_ARC));
+    }
+
+    @Test
+    public void paintedArea() {
+        mBuffer.reset();
+        mBuffer.addOval(RingRenderer.PAINT_BACKGROUND, CX, CY, RADIUS);
+        double ring = 2 * Math.PI * RADIUS * THICKNESS;
+        assertEquals(ring, mBuffer.getPaintedArea(THICKNESS), DELTA);
+
+        //a quarter arc and its two half disc caps
+        mBuffer.addRoundArc(RingRenderer.PAINT_PROGRESS, CX, CY, RADIUS, 270, 90);
+        double caps = Math.PI * THICKNESS / 2 * THICKNESS / 2;
+        assertEquals(ring * 1.25 + caps, mBuffer.getPaintedArea(THICKNESS), DELTA);
+
+        //a stroked thumb covers a disc twice its radius
+        mBuffer.reset();
+        mBuffer.addCircle(RingRenderer.PAINT_PROGRESS, CX, CY, THICKNESS / 2);
+        assertEquals(Math.PI * THICKNESS * THICKNESS, mBuffer.getPaintedArea(THICKNESS), DELTA);
+    }
+
+    @Test
+    public void roundCapsPaintLessThanThumbs() {
+        double standard = record(new StandardRingRenderer(), true, true).getPaintedArea(THICKNESS);
+        double roundCap = record(new RoundCapRingRenderer(), true, true).getPaintedArea(THICKNESS);
+        assertTrue(roundCap + " vs " + standard, roundCap < standard);
+    }
+
+    @Test
+    public void recordingAgainReusesCommands() {
+        RingRenderer renderer = new StandardRingRenderer();
+        for (int i = 0; i < 10; i++) {
+            record(renderer, true, true);
+        }
+        assertEquals(5, mBuffer.getCommandCount());
+        mBuffer.reset();
+        assertEquals(0, mBuffer.getCommandCount());
+        assertEquals(0, mBuffer.getPaintedArea(THICKNESS), DELTA);
+    }
+}
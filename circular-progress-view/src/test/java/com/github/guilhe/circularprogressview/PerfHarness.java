@@ -0,0 +1,174 @@
+package com.github.guilhe.circularprogressview;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Minimal JMH-like harness for the unit test JVM: warms an operation up, times it over several rounds and counts the
+ * bytes it allocates on the calling thread, then gates the result against perf-baseline.properties.
+ * <p>
+ * Each result is written as JSON to perf.outputDir (build/perf by default). A run fails when allocations per op
+ * exceed the baseline by more than {@link #ALLOCATION_SLACK_BYTES}, which doesn't depend on the machine. Time per op
+ * is only reported, unless perf.timeTolerance is above 0: then a run also fails when it exceeds the baseline by more
+ * than that many times, for dedicated runners whose timings are stable. With perf.record=true nothing is gated and
+ * the measured values are merged into perf.outputDir/perf-baseline.properties, to be copied over src/test/resources
+ * once reviewed. Benchmarks without a baseline entry are reported, not gated.
+ */
+final class PerfHarness {
+
+    static final float ALLOCATION_SLACK_BYTES = 8;
+    private static final String BASELINE = "perf-baseline.properties";
+    private static final int ROUNDS = 5;
+
+    private static volatile float sSink;
+
+    interface Op {
+        /**
+         * @param i index of the operation within its round
+         * @return anything derived from the work done, consumed so it can't be optimized away
+         */
+        float run(int i);
+    }
+
+    static final class Result {
+        final String name;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private PerfHarness() {
+    }
+
+    /**
+     * Runs op ops times to warm up, then {@link #ROUNDS} rounds of ops operations keeping the fastest round and the
+     * one allocating least, so GC or JIT hiccups of a single round don't fail the build.
+     */
+    static Result measure(String name, int ops, Op op) {
+        float sink = 0;
+        for (int i = 0; i < ops; i++) {
+            sink += op.run(i);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                sink += op.run(i);
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            bestNanos = Math.min(bestNanos, nanos);
+            bestBytes = Math.min(bestBytes, bytes);
+        }
+        sSink = sink;
+        return new Result(name, (double) bestNanos / ops, (double) bestBytes / ops);
+    }
+
+    /**
+     * {@link #measure(String, int, Op)} then {@link #check(Result)}.
+     */
+    static Result run(String name, int ops, Op op) {
+        Result result = measure(name, ops, op);
+        check(result);
+        return result;
+    }
+
+    static void check(Result result) {
+        Properties baseline = loadBaseline();
+        String nanosKey = result.name + ".nanosPerOp";
+        String bytesKey = result.name + ".bytesPerOp";
+        String baselineNanos = baseline.getProperty(nanosKey);
+        String baselineBytes = baseline.getProperty(bytesKey);
+        File dir = getOutputDir();
+        write(new File(dir, result.name + ".json"), String.format(Locale.US,
+                "{\"name\":\"%s\",\"nanosPerOp\":%.3f,\"bytesPerOp\":%.3f,\"baselineNanosPerOp\":%s,\"baselineBytesPerOp\":%s}\n",
+                result.name, result.nanosPerOp, result.bytesPerOp, baselineNanos, baselineBytes));
+        System.out.println(String.format(Locale.US, "perf %s: %.1f ns/op, %.1f B/op (baseline %s ns/op, %s B/op)",
+                result.name, result.nanosPerOp, result.bytesPerOp, baselineNanos, baselineBytes));
+
+        if (Boolean.getBoolean("perf.record")) {
+            record(new File(dir, BASELINE), nanosKey, result.nanosPerOp, bytesKey, result.bytesPerOp);
+            return;
+        }
+        if (baselineBytes != null && result.bytesPerOp > Double.parseDouble(baselineBytes) + ALLOCATION_SLACK_BYTES) {
+            fail(String.format(Locale.US, "%s allocates %.1f B/op, baseline is %s B/op", result.name, result.bytesPerOp, baselineBytes));
+        }
+        float tolerance = Float.parseFloat(System.getProperty("perf.timeTolerance", "0"));
+        if (tolerance > 0 && baselineNanos != null && result.nanosPerOp > Double.parseDouble(baselineNanos) * tolerance) {
+            fail(String.format(Locale.US, "%s takes %.1f ns/op, baseline is %s ns/op (tolerance %.1fx)", result.name,
+                    result.nanosPerOp, baselineNanos, tolerance));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Properties loadBaseline() {
+        Properties properties = new Properties();
+        InputStream in = PerfHarness.class.getClassLoader().getResourceAsStream(BASELINE);
+        if (in != null) {
+            try {
+                properties.load(in);
+                in.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("can't read " + BASELINE, e);
+            }
+        }
+        return properties;
+    }
+
+    private static File getOutputDir() {
+        File dir = new File(System.getProperty("perf.outputDir", "build/perf"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("can't create " + dir);
+        }
+        return dir;
+    }
+
+    private static synchronized void record(File file, String nanosKey, double nanos, String bytesKey, double bytes) {
+        Properties properties = new Properties();
+        try {
+            if (file.exists()) {
+                InputStream in = new FileInputStream(file);
+                properties.load(in);
+                in.close();
+            }
+            properties.setProperty(nanosKey, String.format(Locale.US, "%.1f", nanos));
+            properties.setProperty(bytesKey, String.format(Locale.US, "%.1f", bytes));
+            OutputStream out = new FileOutputStream(file);
+            properties.store(out, "measured by PerfHarness, review before copying to src/test/resources");
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("can't write " + file, e);
+        }
+    }
+
+    private static void write(File file, String content) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(content);
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("can't write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.guilhe.circularprogressview;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Every writer owns one field and sets it to 1, 2, 3... so a consistent snapshot always holds fields summing to the
+ * number of writes its version covers, half the version. Any torn copy breaks that sum.
+ */
+public class RenderStateTest {
+
+    private static final int WRITES = 2000000;
+    private static final int WRITERS = 6;
+
+    @Test(timeout = 60000)
+    public void readsAreNeverTorn() throws Exception {
+        final RenderState state = new RenderState();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final long[] reads = new long[1];
+        final long[] blocked = new long[1];
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RenderState.Snapshot snapshot = new RenderState.Snapshot();
+                long[] last = new long[WRITERS];
+                int lastVersion = 0;
+                boolean done = false;
+                while (!done && failure.get() == null) {
+                    //one last read once every writer finished
+                    done = stop.get();
+                    state.read(snapshot);
+                    reads[0]++;
+                    long[] values = {(long) snapshot.progress, snapshot.max, snapshot.startingAngle,
+                            (long) snapshot.thickness, snapshot.progressColor, snapshot.backgroundColor};
+                    long sum = 0;
+                    for (int i = 0; i < WRITERS; i++) {
+                        if (values[i] < last[i]) {
+                            failure.set("field " + i + " went back from " + last[i] + " to " + values[i]);
+                        }
+                        last[i] = values[i];
+                        sum += values[i];
+                    }
+                    if ((snapshot.version & 1) != 0 || snapshot.version < lastVersion) {
+                        failure.set("unexpected version " + snapshot.version + " after " + lastVersion);
+                    } else if (sum != snapshot.version / 2) {
+                        failure.set("torn snapshot, fields sum to " + sum + " at version " + snapshot.version);
+                    }
+                    lastVersion = snapshot.version;
+                }
+                if (failure.get() == null && lastVersion != 2 * WRITERS * WRITES) {
+                    failure.set("last read missed writes, version " + lastVersion);
+                }
+                blocked[0] = ManagementFactory.getThreadMXBean().getThreadInfo(Thread.currentThread().getId()).getBlockedCount();
+            }
+        });
+        for (int w = 0; w < WRITERS; w++) {
+            final int field = w;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int value = 1; value <= WRITES; value++) {
+                        write(state, field, value);
+                    }
+                    writersDone.countDown();
+                }
+            }).start();
+        }
+
+        reader.start();
+        start.countDown();
+        writersDone.await();
+        stop.set(true);
+        reader.join();
+
+        assertNull(failure.get(), failure.get());
+        assertTrue(reads[0] > 0);
+        //the reader spins, it never waits on the writers' monitor
+        assertEquals(0, blocked[0]);
+    }
+
+    @Test
+    public void progressLeavesPaintVersionAlone() {
+        RenderState state = new RenderState();
+        RenderState.Snapshot snapshot = new RenderState.Snapshot();
+        state.read(snapshot);
+        int paintVersion = snapshot.paintVersion;
+        int version = snapshot.version;
+
+        state.setProgress(42);
+        state.setMax(50);
+        state.setStartingAngle(90);
+        state.setShadowEnabled(true);
+        state.setThumbEnabled(true);
+        state.read(snapshot);
+        assertEquals(paintVersion, snapshot.paintVersion);
+        assertNotEquals(version, snapshot.version);
+
+        state.setThickness(3);
+        state.read(snapshot);
+        assertNotEquals(paintVersion, snapshot.paintVersion);
+        paintVersion = snapshot.paintVersion;
+        state.setProgressColor(1);
+        state.read(snapshot);
+        assertNotEquals(paintVersion, snapshot.paintVersion);
+        paintVersion = snapshot.paintVersion;
+        state.setBackgroundColor(1);
+        state.read(snapshot);
+        assertNotEquals(paintVersion, snapshot.paintVersion);
+        assertFalse((snapshot.version & 1) != 0);
+    }
+
+    private static void write(RenderState state, int field, int value) {
+        switch (field) {
+            case 0:
+                state.setProgress(value);
+                break;
+            case 1:
+                state.setMax(value);
+                break;
+            case 2:
+                state.setStartingAngle(value);
+                break;
+            case 3:
+                state.setThickness(value);
+                break;
+            case 4:
+                state.setProgressColor(value);
+                break;
+            default:
+                state.setBackgroundColor(value);
+                break;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.guilhe.circularprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Paging of {@link RingAtlasCache} for a 48dp ring at xxhdpi (144px) showing whole percents: 11x10 cells, 9.1MB if
+ * allocated at once.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RingAtlasCacheTest {
+
+    private static final int SIZE = 144;
+    private static final int STEPS = 100;
+    private static final int PAGE_BYTES = 4 * 11 * SIZE * SIZE;
+
+    private RingAtlasCache mCache;
+    private final Rect mCell = new Rect();
+
+    @Before
+    public void setUp() {
+        mCache = RingAtlasCache.getInstance(RuntimeEnvironment.application);
+        mCache.clear();
+    }
+
+    private static RingAtlasCache.Key newKey(int size) {
+        return newKey(size, CircularProgressView.DEFAULT_RING_RENDERER);
+    }
+
+    private static RingAtlasCache.Key newKey(int size, RingRenderer renderer) {
+        return new RingAtlasCache.Key(size, 12, Color.RED, Color.GREEN, 270, true, true, STEPS, renderer);
+    }
+
+    @Test
+    public void allocatesOnlyPagesShown() {
+        int refused = mCache.getRefusedCount();
+        RingAtlasCache.Atlas atlas = mCache.getAtlas(newKey(SIZE));
+        assertNotNull(atlas);
+        assertEquals(0, atlas.getByteCount());
+
+        Bitmap page = mCache.getCell(atlas, 42, mCell);
+        assertEquals(PAGE_BYTES, atlas.getByteCount());
+        assertEquals(11 * SIZE, page.getWidth());
+        assertEquals(new Rect(9 * SIZE, 0, 10 * SIZE, SIZE), mCell);
+        assertTrue(mCache.getCell(atlas, 43, mCell) == page);
+        assertEquals(PAGE_BYTES, atlas.getByteCount());
+        assertEquals(refused, mCache.getRefusedCount());
+    }
+
+    @Test
+    public void showingEveryStepStaysWithinBudget() {
+        int refused = mCache.getRefusedCount();
+        RingAtlasCache.Key key = newKey(SIZE);
+        for (int step = 0; step <= STEPS; step++) {
+            RingAtlasCache.Atlas atlas = mCache.getAtlas(key);
+            assertNotNull(atlas);
+            assertNotNull(mCache.getCell(atlas, step, mCell));
+            assertTrue(mCache.getSize() <= RingAtlasCache.MAX_SIZE_BYTES);
+        }
+        assertEquals(refused, mCache.getRefusedCount());
+
+        //the first row was the least recently used page and had to make room for the last one
+        int allocations = mCache.getPageAllocationCount();
+        int renders = mCache.getCellRenderCount();
+        mCache.getCell(mCache.getAtlas(key), 0, mCell);
+        assertEquals(allocations + 1, mCache.getPageAllocationCount());
+        assertEquals(renders + 1, mCache.getCellRenderCount());
+    }
+
+    @Test
+    public void refusesOncePerKey() {
+        int refused = mCache.getRefusedCount();
+        RingAtlasCache.Key key = newKey(500);
+        for (int i = 0; i < 10; i++) {
+            assertNull(mCache.getAtlas(key));
+        }
+        assertTrue(key.refused);
+        assertEquals(refused + 1, mCache.getRefusedCount());
+    }
+
+    @Test
+    public void renderersGetTheirOwnAtlas() {
+        RingAtlasCache.Atlas standard = mCache.getAtlas(newKey(SIZE));
+        RingAtlasCache.Atlas roundCap = mCache.getAtlas(newKey(SIZE, new RoundCapRingRenderer()));
+        assertNotNull(roundCap);
+        assertTrue(standard != roundCap);
+        assertTrue(standard == mCache.getAtlas(newKey(SIZE, CircularProgressView.DEFAULT_RING_RENDERER)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.guilhe.circularprogressview;
+
+import android.app.Activity;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Inflation cost of many instances sharing one attribute set, and that {@link StyleConfig} resolves it only once.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class StyleConfigBenchmarkTest {
+
+    private static final int INSTANCES = 500;
+    private static final int OPS = 20000;
+
+    private Activity mActivity;
+    private AttributeSet mAttrs;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mAttrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.progress, "40")
+                .addAttribute(R.attr.progressBarColor, "#FF0000")
+                .build();
+    }
+
+    @Test
+    public void constructInstances() {
+        int resolved = StyleConfig.getResolveCount();
+        PerfHarness.run("view.construct", INSTANCES, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                return new CircularProgressView(mActivity, mAttrs).getProgress();
+            }
+        });
+        //warm up and rounds alike, every instance after the first reuses its attributes
+        assertTrue(StyleConfig.getResolveCount() - resolved <= 1);
+    }
+
+    @Test
+    public void cachedConfigSkipsResolving() {
+        StyleConfig config = StyleConfig.obtain(mActivity, mAttrs, R.attr.circularProgressViewStyle, R.style.CircularProgressView);
+        int resolved = StyleConfig.getResolveCount();
+        //an equal attribute set, as another inflation of the same layout would pass
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.progress, "40")
+                .addAttribute(R.attr.progressBarColor, "#FF0000")
+                .build();
+        assertSame(config, StyleConfig.obtain(mActivity, attrs, R.attr.circularProgressViewStyle, R.style.CircularProgressView));
+        assertEquals(resolved, StyleConfig.getResolveCount());
+
+        PerfHarness.run("styleConfig.obtain.cached", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                return StyleConfig.obtain(mActivity, mAttrs, R.attr.circularProgressViewStyle, R.style.CircularProgressView).thickness;
+            }
+        });
+        assertEquals(resolved, StyleConfig.getResolveCount());
+        //what every inflation did before the cache, reported for comparison
+        PerfHarness.run("styleConfig.resolve", OPS, new PerfHarness.Op() {
+            @Override
+            public float run(int i) {
+                TypedArray typedArray = mActivity.getTheme().obtainStyledAttributes(mAttrs, R.styleable.CircularProgressView,
+                        R.attr.circularProgressViewStyle, R.style.CircularProgressView);
+                float sum = typedArray.getInt(R.styleable.CircularProgressView_max, 0)
+                        + (typedArray.getBoolean(R.styleable.CircularProgressView_shadow, true) ? 1 : 0)
+                        + (typedArray.getBoolean(R.styleable.CircularProgressView_progressThumb, false) ? 1 : 0)
+                        + typedArray.getInteger(R.styleable.CircularProgressView_startingAngle, 0)
+                        + typedArray.getFloat(R.styleable.CircularProgressView_progress, 0)
+                        + typedArray.getDimension(R.styleable.CircularProgressView_progressBarThickness, 0)
+                        + typedArray.getInt(R.styleable.CircularProgressView_progressBarColor, 0)
+                        + typedArray.getInt(R.styleable.CircularProgressView_backgroundColor, 0);
+                typedArray.recycle();
+                return sum;
+            }
+        });
+    }
+}